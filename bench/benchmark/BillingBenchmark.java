@@ -0,0 +1,88 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pricing one athlete: the printed breakdown of CostCalculator, the pure
+ * breakdown, and the single lookup in the fee table.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BillingBenchmark {
+
+  private static final MethodHandle CALCULATE_TOTAL_COST = Targets.method(
+    "CostCalculator",
+    "calculateTotalCost",
+    PrintStream.class,
+    Targets.type("TrainingPlan"),
+    int.class,
+    int.class
+  );
+  private static final MethodHandle CALCULATE = Targets.method(
+    "CostCalculator",
+    "calculate",
+    Targets.type("TrainingPlan"),
+    int.class,
+    int.class
+  );
+  private static final MethodHandle CURRENT_FEES = Targets.method(
+    "FeeSchedule",
+    "current"
+  );
+  private static final MethodHandle TOTAL_CENTS = Targets.method(
+    "FeeSchedule",
+    "totalCents",
+    Targets.type("TrainingPlan"),
+    int.class,
+    int.class
+  );
+
+  private Object plan;
+  private int competitions = 2;
+  private int coachingHours = 3;
+  private PrintStream console; // Where calculateTotalCost prints, discarded
+
+  @Setup
+  public void setUp() {
+    plan = Targets.constant("TrainingPlan", "ELITE");
+    console = new PrintStream(OutputStream.nullOutputStream());
+  }
+
+  @Benchmark
+  public void calculateTotalCost() throws Throwable {
+    CALCULATE_TOTAL_COST.invokeExact(
+      console,
+      plan,
+      competitions,
+      coachingHours
+    );
+  }
+
+  @Benchmark
+  public Object calculate() throws Throwable {
+    return (Object) CALCULATE.invokeExact(plan, competitions, coachingHours);
+  }
+
+  @Benchmark
+  public long feeTableLookup() throws Throwable {
+    Object fees = (Object) CURRENT_FEES.invokeExact();
+    return (long) TOTAL_CENTS.invokeExact(fees, plan, competitions, coachingHours);
+  }
+}
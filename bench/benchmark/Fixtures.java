@@ -0,0 +1,100 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic rosters shared by the benchmarks.
+ */
+final class Fixtures {
+
+  static final MethodHandle NEW_ATHLETE = Targets.constructor(
+    "Athlete",
+    String.class,
+    Targets.type("TrainingPlan"),
+    int.class,
+    int.class,
+    int.class,
+    Targets.type("WeightCategory")
+  );
+  static final MethodHandle GET_NAME = Targets.method("Athlete", "getName");
+
+  private static final String[] FIRST = {
+    "John", "Mary", "Peter", "Alice", "Robert", "Carol", "James", "Helen",
+  };
+  private static final String[] LAST = {
+    "Smith", "Jones", "Taylor", "Brown", "Wilson", "Evans", "Walker", "Wright",
+  };
+
+  private Fixtures() {}
+
+  /**
+   * Builds a roster of valid athletes with unique names.
+   *
+   * @param size The number of athletes.
+   * @return The athletes, as application Athlete objects.
+   */
+  static List<Object> athletes(int size) {
+    Object[] plans = Targets.constants("TrainingPlan");
+    Object[] categories = Targets.constants("WeightCategory");
+    Random random = new Random(42);
+    List<Object> athletes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      int plan = random.nextInt(plans.length);
+      athletes.add(
+        newAthlete(
+          name(i),
+          plans[plan],
+          50 + random.nextInt(70),
+          random.nextInt(6),
+          plan == 0 ? 0 : random.nextInt(4),
+          categories[random.nextInt(categories.length)]
+        )
+      );
+    }
+    return athletes;
+  }
+
+  /**
+   * Returns the unique name given to the athlete at an index.
+   *
+   * @param index The index of the athlete.
+   * @return The name, letters and spaces only.
+   */
+  static String name(int index) {
+    StringBuilder suffix = new StringBuilder();
+    for (int n = index / (FIRST.length * LAST.length); n > 0; n /= 26) {
+      suffix.append((char) ('a' + n % 26));
+    }
+    return (
+      FIRST[index % FIRST.length] +
+      " " +
+      LAST[(index / FIRST.length) % LAST.length] +
+      suffix
+    );
+  }
+
+  private static Object newAthlete(
+    String name,
+    Object plan,
+    int weight,
+    int coachingHours,
+    int competitions,
+    Object category
+  ) {
+    try {
+      return (Object) NEW_ATHLETE.invokeExact(
+        name,
+        plan,
+        weight,
+        coachingHours,
+        competitions,
+        category
+      );
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
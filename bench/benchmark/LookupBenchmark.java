@@ -0,0 +1,87 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Finding an athlete by name: the linear equalsIgnoreCase scan of
+ * Program.showIndividualAthleteInformation against the name index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+
+  private static final MethodHandle NEW_INDEX = Targets.constructor(
+    "AthleteNameIndex"
+  );
+  private static final MethodHandle ADD = Targets.method(
+    "AthleteNameIndex",
+    "add",
+    String.class,
+    int.class
+  );
+  private static final MethodHandle FIND = Targets.method(
+    "AthleteNameIndex",
+    "find",
+    String.class
+  );
+  private static final MethodHandle FIND_BY_PREFIX = Targets.method(
+    "AthleteNameIndex",
+    "findByPrefix",
+    String.class,
+    int.class
+  );
+
+  @Param({ "1000", "100000" })
+  public int rosterSize;
+
+  private List<Object> roster;
+  private Object index;
+  private String wanted; // Name of the last athlete, in other case
+
+  @Setup
+  public void setUp() throws Throwable {
+    roster = Fixtures.athletes(rosterSize);
+    index = (Object) NEW_INDEX.invokeExact();
+    for (int id = 0; id < roster.size(); id++) {
+      ADD.invokeExact(index, (String) Fixtures.GET_NAME.invokeExact(roster.get(id)), id);
+    }
+    wanted = Fixtures.name(rosterSize - 1).toUpperCase();
+  }
+
+  @Benchmark
+  public Object linearScan() throws Throwable {
+    for (Object athlete : roster) {
+      if (((String) Fixtures.GET_NAME.invokeExact(athlete)).equalsIgnoreCase(wanted)) {
+        return athlete;
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public int[] nameIndex() throws Throwable {
+    return (int[]) FIND.invokeExact(index, wanted);
+  }
+
+  @Benchmark
+  public int[] namePrefix() throws Throwable {
+    return (int[]) FIND_BY_PREFIX.invokeExact(index, "jo", 10);
+  }
+}
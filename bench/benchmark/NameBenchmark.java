@@ -0,0 +1,48 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Validating and formatting athlete names as registration does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NameBenchmark {
+
+  private static final MethodHandle IS_VALID_NAME = Targets.method(
+    "Athlete",
+    "isValidName",
+    String.class
+  );
+  private static final MethodHandle FORMAT_NAME = Targets.method(
+    "Athlete",
+    "formatName",
+    String.class
+  );
+
+  private String name = "jOHN   sMITH";
+
+  @Benchmark
+  public boolean isValidName() throws Throwable {
+    return (boolean) IS_VALID_NAME.invokeExact(name);
+  }
+
+  @Benchmark
+  public String formatName() throws Throwable {
+    return (String) FORMAT_NAME.invokeExact(name);
+  }
+}
@@ -0,0 +1,126 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serializing and deserializing athletes the way Program used to with
+ * ObjectOutputStream, against the record codec of AthleteStore.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+
+  private static final MethodHandle ENCODE = Targets.method(
+    "AthleteStore",
+    "encode",
+    Targets.type("Athlete"),
+    ByteBuffer.class
+  );
+  private static final MethodHandle DECODE = Targets.method(
+    "AthleteStore",
+    "decode",
+    ByteBuffer.class
+  );
+
+  @Param({ "1000" })
+  public int rosterSize;
+
+  private Object athlete;
+  private ArrayList<Object> roster;
+  private byte[] serializedAthlete;
+  private byte[] serializedRoster;
+  private ByteBuffer recordBuffer;
+  private ByteBuffer encodedAthlete;
+
+  @Setup
+  public void setUp() throws Throwable {
+    roster = new ArrayList<>(Fixtures.athletes(rosterSize));
+    athlete = roster.get(0);
+    serializedAthlete = serialize(athlete);
+    serializedRoster = serialize(roster);
+    recordBuffer = ByteBuffer.allocate(rosterSize * 64);
+    encodedAthlete = ByteBuffer.allocate(1 << 16);
+    ENCODE.invokeExact(athlete, encodedAthlete);
+    encodedAthlete.flip();
+  }
+
+  @Benchmark
+  public byte[] serializeAthlete() throws IOException {
+    return serialize(athlete);
+  }
+
+  @Benchmark
+  public Object deserializeAthlete() throws Exception {
+    return deserialize(serializedAthlete);
+  }
+
+  @Benchmark
+  public byte[] serializeRoster() throws IOException {
+    return serialize(roster);
+  }
+
+  @Benchmark
+  public Object deserializeRoster() throws Exception {
+    return deserialize(serializedRoster);
+  }
+
+  @Benchmark
+  public ByteBuffer encodeRecord() throws Throwable {
+    recordBuffer.clear();
+    ENCODE.invokeExact(athlete, recordBuffer);
+    return recordBuffer;
+  }
+
+  @Benchmark
+  public Object decodeRecord() throws Throwable {
+    return (Object) DECODE.invokeExact(encodedAthlete);
+  }
+
+  @Benchmark
+  public ByteBuffer encodeRoster() throws Throwable {
+    recordBuffer.clear();
+    for (Object each : roster) {
+      ENCODE.invokeExact(each, recordBuffer);
+    }
+    return recordBuffer;
+  }
+
+  private static byte[] serialize(Object value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(value);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Object deserialize(byte[] bytes) throws Exception {
+    try (
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))
+    ) {
+      return in.readObject();
+    }
+  }
+}
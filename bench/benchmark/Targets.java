@@ -0,0 +1,115 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Resolves members of the application classes for the benchmarks.
+ *
+ * The application lives in the unnamed package, which code in a named
+ * package cannot refer to, and JMH refuses benchmarks in the unnamed
+ * package. Members are therefore looked up reflectively once, with every
+ * application type in their signature erased to Object. Benchmarks keep the
+ * handles in static final fields, where the JIT inlines them like direct calls.
+ */
+final class Targets {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private Targets() {}
+
+  /**
+   * Loads an application class.
+   *
+   * @param name The simple name of the class.
+   * @return The class.
+   */
+  static Class<?> type(String name) {
+    try {
+      return Class.forName(name);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns a handle to a method, whatever its access modifier. For an
+   * instance method the receiver is the first argument.
+   *
+   * @param type   The simple name of the declaring class.
+   * @param name   The name of the method.
+   * @param params The parameter types.
+   * @return The handle, with application types erased to Object.
+   */
+  static MethodHandle method(String type, String name, Class<?>... params) {
+    try {
+      Method method = type(type).getDeclaredMethod(name, params);
+      method.setAccessible(true);
+      return erase(LOOKUP.unreflect(method));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns a handle to a constructor.
+   *
+   * @param type   The simple name of the class.
+   * @param params The parameter types.
+   * @return The handle, with application types erased to Object.
+   */
+  static MethodHandle constructor(String type, Class<?>... params) {
+    try {
+      Constructor<?> constructor = type(type).getDeclaredConstructor(params);
+      constructor.setAccessible(true);
+      return erase(LOOKUP.unreflectConstructor(constructor));
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns an enum constant of an application enum.
+   *
+   * @param type The simple name of the enum.
+   * @param name The name of the constant.
+   * @return The constant.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static Object constant(String type, String name) {
+    return Enum.valueOf((Class) type(type), name);
+  }
+
+  /**
+   * Returns every constant of an application enum.
+   *
+   * @param type The simple name of the enum.
+   * @return The constants in declaration order.
+   */
+  static Object[] constants(String type) {
+    return type(type).getEnumConstants();
+  }
+
+  private static MethodHandle erase(MethodHandle handle) {
+    MethodType type = handle.type();
+    for (int i = 0; i < type.parameterCount(); i++) {
+      if (isApplicationType(type.parameterType(i))) {
+        type = type.changeParameterType(i, Object.class);
+      }
+    }
+    if (isApplicationType(type.returnType())) {
+      type = type.changeReturnType(Object.class);
+    }
+    return handle.asType(type);
+  }
+
+  private static boolean isApplicationType(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    return !type.isPrimitive() && type.getPackageName().isEmpty();
+  }
+}
@@ -0,0 +1,101 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching a typed category name as UIManager.selectWeightCategory does, and
+ * matching a weight to a category as WeightCalculator does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WeightCategoryBenchmark {
+
+  private static final MethodHandle BY_NAME = Targets.method(
+    "WeightCategory",
+    "getWeightCategoryByName",
+    String.class
+  );
+  private static final MethodHandle GET_NAME = Targets.method(
+    "WeightCategory",
+    "getName"
+  );
+  private static final MethodHandle LOWER_LIMIT = Targets.method(
+    "WeightCategory",
+    "getLowerWeightLimit"
+  );
+  private static final MethodHandle UPPER_LIMIT = Targets.method(
+    "WeightCategory",
+    "getUpperWeightLimit"
+  );
+  private static final MethodHandle CLASSIFY = Targets.method(
+    "WeightClassifier",
+    "classify",
+    int.class
+  );
+
+  private String typedName = "light middleweight";
+  private int weight = 95;
+  private Object[] categories;
+
+  @Setup
+  public void setUp() {
+    categories = Targets.constants("WeightCategory");
+  }
+
+  /**
+   * The regex-based matching loop selectWeightCategory used originally.
+   */
+  @Benchmark
+  public Object matchNameWithRegex() throws Throwable {
+    String key = typedName.replaceAll("[\\s-]", "").toUpperCase();
+    for (Object category : categories) {
+      String name = (String) GET_NAME.invokeExact(category);
+      if (key.equals(name.replaceAll("[\\s-]", "").toUpperCase())) {
+        return category;
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public Object matchName() throws Throwable {
+    return (Object) BY_NAME.invokeExact(typedName);
+  }
+
+  /**
+   * Checking the bounds of each category in turn, as compareWeight does for
+   * one category.
+   */
+  @Benchmark
+  public Object matchWeightByBounds() throws Throwable {
+    for (Object category : categories) {
+      if (
+        weight >= (int) LOWER_LIMIT.invokeExact(category) &&
+        weight <= (int) UPPER_LIMIT.invokeExact(category)
+      ) {
+        return category;
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public Object classifyWeight() throws Throwable {
+    return (Object) CLASSIFY.invokeExact(weight);
+  }
+}
@@ -1,11 +1,20 @@
-import java.io.*;
-import java.util.Scanner;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * Represents an athlete.
  */
 public class Athlete implements Serializable {
 
+  private static final long serialVersionUID = 0x0cd505564f56d6beL; // The value computed for the class that wrote the legacy athletes.dat files
+
+  private static final Pattern NAME_PATTERN = Pattern.compile(
+    "^[a-zA-Z\\s]{1,50}$"
+  ); // Compiled once rather than on every validation
+  private static final Pattern WHITESPACE = Pattern.compile("\\s");
+
   // Instance variables
   private String name; // The name of the athlete
   private TrainingPlan trainingPlan; // The training plan of the athlete
@@ -21,6 +30,33 @@ public class Athlete implements Serializable {
     // Default constructor
   }
 
+  /**
+   * Constructs an athlete with all details already known, e.g. when the
+   * athlete is read back from the store.
+   *
+   * @param name                 The name of the athlete.
+   * @param trainingPlan         The training plan of the athlete.
+   * @param currentWeight        The current weight of the athlete in kilograms.
+   * @param privateCoachingHours The number of private coaching hours per week.
+   * @param competitionsEntered  The number of competitions entered this month.
+   * @param weightCategory       The weight category of the athlete.
+   */
+  public Athlete(
+    String name,
+    TrainingPlan trainingPlan,
+    int currentWeight,
+    int privateCoachingHours,
+    int competitionsEntered,
+    WeightCategory weightCategory
+  ) {
+    this.name = name;
+    this.trainingPlan = trainingPlan;
+    this.currentWeight = currentWeight;
+    this.privateCoachingHours = privateCoachingHours;
+    this.competitionsEntered = competitionsEntered;
+    this.weightCategory = weightCategory;
+  }
+
   // Getters
 
   /**
@@ -32,6 +68,33 @@ public class Athlete implements Serializable {
     return name;
   }
 
+  /**
+   * Gets the training plan of the athlete.
+   *
+   * @return The training plan of the athlete.
+   */
+  public TrainingPlan getTrainingPlan() {
+    return trainingPlan;
+  }
+
+  /**
+   * Gets the number of private coaching hours per week.
+   *
+   * @return The number of private coaching hours per week.
+   */
+  public int getPrivateCoachingHours() {
+    return privateCoachingHours;
+  }
+
+  /**
+   * Gets the number of competitions entered this month.
+   *
+   * @return The number of competitions entered this month.
+   */
+  public int getCompetitionsEntered() {
+    return competitionsEntered;
+  }
+
   /**
    * Gets the weight category of the athlete.
    *
@@ -99,69 +162,79 @@ public class Athlete implements Serializable {
     );
   }
 
-  // Method to register an athlete
-  public void register() {
+  /**
+   * Registers an athlete by asking for each detail in turn.
+   *
+   * @param input The source of the user's answers.
+   */
+  public void register(InputSource input) {
     // Flag to track if the private coaching question has been asked
     boolean privateCoachingQuestionAsked = false;
     // Variable to store the number of private coaching hours
 
-    // Create a scanner object to read user input
-    Scanner scanner = new Scanner(System.in);
+    PrintStream out = input.out();
+    EligibilityRules rules = EligibilityRules.current(); // Limits on weight, coaching hours and competitions
     do {
       // Prompt the user to enter the athlete's name
-      name = UIManager.promptString("Enter athlete's name: ", scanner);
+      name = UIManager.promptString("Enter athlete's name: ", input);
       if (isValidName(name)) {
-        System.out.println(
+        out.println(
           "Invalid name. Please enter a valid name (no numbers, max 50 characters)."
         );
       } else if (name.length() <= 3) {
-        System.out.println(
-          "Name must be more than 3 characters. Please enter again."
-        );
+        out.println("Name must be more than 3 characters. Please enter again.");
       } else {
         // Format the name with the first initial as a capital letter and the rest as lowercase
         name = formatName(name);
         // Display a line after successful name insertion
-        System.out.println("Name successfully inserted: " + name);
-        System.out.println();
+        out.println("Name successfully inserted: " + name);
+        out.println();
       }
     } while (isValidName(name) || name.length() <= 3);
 
     // Display competition rules
-    CompetitionRules.displayRules();
-    System.out.println();
+    CompetitionRules.displayRules(out);
+    out.println();
 
     do {
       // Select a training plan
-      trainingPlan = UIManager.selectTrainingPlan(scanner);
-      System.out.println();
-      System.out.println("Selected training plan: " + trainingPlan.getName());
-      System.out.println();
+      trainingPlan = UIManager.selectTrainingPlan(input);
+      out.println();
+      out.println("Selected training plan: " + trainingPlan.getName());
+      out.println();
     } while (
       !UIManager.confirm(
         "Confirm " + trainingPlan.getName() + " training plan?",
-        scanner
+        input
       )
     );
-    System.out.println();
+    out.println();
 
     // Select a weight category
     // Instance variable to store the athlete's weight category
-    weightCategory = UIManager.selectWeightCategory(scanner);
-    System.out.println();
+    weightCategory = UIManager.selectWeightCategory(input);
+    out.println();
 
     // Enter the athlete's current weight
-    currentWeight =
-      UIManager.promptInt("Enter current weight in kilograms: ", scanner);
-    System.out.println("Your current weight is " + currentWeight + " kg.");
-    System.out.println();
+    String weightError;
+    do {
+      currentWeight =
+        UIManager.promptInt("Enter current weight in kilograms: ", input);
+      weightError =
+        rules.check(EligibilityRules.Field.WEIGHT, trainingPlan, currentWeight);
+      if (weightError != null) {
+        out.println(weightError + ". Please enter again.");
+      }
+    } while (weightError != null);
+    out.println("Your current weight is " + currentWeight + " kg.");
+    out.println();
 
     // Ask for private coaching hours per week
     while (true) {
       if (!privateCoachingQuestionAsked) {
         String coachingChoice = UIManager.promptString(
           "Have you taken private coaching? (yes/no): ",
-          scanner
+          input
         );
         if (
           coachingChoice.equalsIgnoreCase("yes") ||
@@ -175,84 +248,135 @@ public class Athlete implements Serializable {
           privateCoachingHours = 0;
           break;
         } else {
-          System.out.println("Invalid choice. Please enter 'yes' or 'no'.");
+          out.println("Invalid choice. Please enter 'yes' or 'no'.");
           continue;
         }
       }
 
+      int maxHours = rules.max(
+        EligibilityRules.Field.COACHING_HOURS,
+        trainingPlan
+      );
       privateCoachingHours =
         UIManager.promptInt(
-          "Enter number of private coaching hours per week (maximum 5): ",
-          scanner
+          "Enter number of private coaching hours per week (maximum " +
+          maxHours +
+          "): ",
+          input
         );
-      if (privateCoachingHours >= 1 && privateCoachingHours <= 5) {
+      String error = rules.check(
+        EligibilityRules.Field.COACHING_HOURS,
+        trainingPlan,
+        privateCoachingHours
+      );
+      if (privateCoachingHours >= 1 && error == null) {
         break;
       } else {
-        System.out.println(
-          "Invalid input. Please enter a number between 1 and 5."
+        out.println(
+          "Invalid input. Please enter a number between 1 and " + maxHours + "."
         );
       }
     }
 
-    System.out.println();
+    out.println();
 
-    if (trainingPlan.equals(TrainingPlan.BEGINNER)) {
-      competitionsEntered = 0; // Skip asking for competitions for the beginner plan
+    int maxCompetitions = rules.max(
+      EligibilityRules.Field.COMPETITIONS,
+      trainingPlan
+    );
+    if (maxCompetitions <= 0) {
+      competitionsEntered = 0; // Skip asking for competitions for plans that cannot enter them
     } else {
+      String error;
       do {
         competitionsEntered =
           UIManager.promptInt(
             "Enter number of competitions entered this month: ", //  asking for competitions for intermediate and elite plans
-            scanner
+            input
+          );
+        error =
+          rules.check(
+            EligibilityRules.Field.COMPETITIONS,
+            trainingPlan,
+            competitionsEntered
           );
-        if (competitionsEntered < 0 || competitionsEntered > 3) { //Validation
-          System.out.println(
-            "Invalid input. Please enter a number between 0 and 3."
+        if (error != null) { //Validation
+          out.println(
+            "Invalid input. Please enter a number between 0 and " +
+            maxCompetitions +
+            "."
           );
         }
-      } while (competitionsEntered < 0 || competitionsEntered > 3);
-      System.out.println(
+      } while (error != null);
+      out.println(
         "You have entered " + competitionsEntered + "competition(s) this month."
       );
     }
-    System.out.println();
+    out.println();
 
     // Compare weight with weight category
-    WeightCalculator.compareWeight(this, weightCategory, scanner);
+    WeightCalculator.compareWeight(this, weightCategory, input);
 
     // Display the cost of each item separately
-    System.out.println();
-    System.out.println("Athlete's name: " + name);
-    System.out.println();
+    out.println();
+    out.println("Athlete's name: " + name);
+    out.println();
     CostCalculator.calculateTotalCost(
+      out,
       trainingPlan,
       competitionsEntered,
       privateCoachingHours
     );
-    System.out.println();
+    out.println();
+  }
 
-    // Serialize athlete object and write to file
-    try (
-      ObjectOutputStream oos = new ObjectOutputStream(
-        new FileOutputStream("athletes.dat", true)
-      )
-    ) {
-      oos.writeObject(this);
-    } catch (IOException e) {
-      System.err.println("Error saving athlete information: " + e.getMessage());
+  /**
+   * Checks an athlete's details against the name rules and the current
+   * {@link EligibilityRules}.
+   *
+   * @param name                 The name of the athlete.
+   * @param trainingPlan         The training plan of the athlete.
+   * @param currentWeight        The current weight of the athlete in kilograms.
+   * @param privateCoachingHours The number of private coaching hours per week.
+   * @param competitionsEntered  The number of competitions entered this month.
+   * @return A message describing the first broken rule, or null if the details are valid.
+   */
+  static String validate(
+    String name,
+    TrainingPlan trainingPlan,
+    int currentWeight,
+    int privateCoachingHours,
+    int competitionsEntered
+  ) {
+    if (isValidName(name)) {
+      return "Invalid name (no numbers, max 50 characters)";
+    } else if (name.length() <= 3) {
+      return "Name must be more than 3 characters";
     }
+    List<EligibilityRules.Rule> broken = EligibilityRules
+      .current()
+      .violations(
+        trainingPlan,
+        currentWeight,
+        privateCoachingHours,
+        competitionsEntered
+      );
+    return broken.isEmpty() ? null : broken.get(0).message();
   }
 
   // Method to check if a name is valid
-  private boolean isValidName(String name) {
-    return !name.matches("^[a-zA-Z\\s]{1,50}$"); // Only alphabetic characters and spaces, max 50 characters
+  static boolean isValidName(String name) {
+    return !NAME_PATTERN.matcher(name).matches(); // Only alphabetic characters and spaces, max 50 characters
   }
 
-  // Method to format a name
-  private String formatName(String name) {
-    String[] parts = name.toLowerCase().split("\\s");
+  // Method to format a name, also used as the normalized key of the name index
+  static String formatName(String name) {
+    String[] parts = WHITESPACE.split(name.toLowerCase());
     StringBuilder formattedName = new StringBuilder();
     for (String part : parts) {
+      if (part.isEmpty()) {
+        continue; // Skip runs of whitespace
+      }
       formattedName
         .append(Character.toUpperCase(part.charAt(0)))
         .append(part.substring(1))
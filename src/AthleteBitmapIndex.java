@@ -0,0 +1,255 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Secondary indexes for filtering the roster without looking at each
+ * athlete: one bitmap of athlete ids per training plan and per weight
+ * category, and the ids of the athletes at each weight in weight order.
+ *
+ * Bitmaps are split into chunks that never move once allocated, and bits
+ * are set and cleared with atomic word updates, so registrations and weight
+ * changes from several threads update them without a shared lock. Queries
+ * take a copy of the bits below a given size as a {@link BitSet}, which is
+ * then combined by {@link AthleteQuery}.
+ */
+class AthleteBitmapIndex {
+
+  private static final int CHUNK_BITS = 16;
+  private static final int CHUNK_WORD_BITS = CHUNK_BITS - 6; // 64 ids per word
+  private static final int CHUNK_WORDS = 1 << CHUNK_WORD_BITS;
+  private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(
+    long[].class
+  );
+
+  private final Bitmap[] plans = newBitmaps(TrainingPlan.values().length);
+  private final Bitmap[] categories = newBitmaps(WeightCategory.values().length);
+  private final ConcurrentNavigableMap<Integer, IdList> weights = new ConcurrentSkipListMap<>(); // Weight -> ids
+
+  /**
+   * Builds the indexes of a whole roster in one go, for a roster loaded in
+   * bulk before anyone else can see the index.
+   *
+   * @param roster The roster.
+   * @return The index.
+   */
+  public static AthleteBitmapIndex of(ColumnarRoster roster) {
+    AthleteBitmapIndex index = new AthleteBitmapIndex();
+    int count = roster.size();
+    int[] atWeight = new int[1 << Short.SIZE]; // Athletes per weight, offset by Short.MIN_VALUE
+    long[] planWords = new long[index.plans.length]; // Bits of the current 64 ids
+    long[] categoryWords = new long[index.categories.length];
+    roster.forEachChunk(
+      count,
+      (firstId, length, plans, categories, weights, hours, competitions) -> {
+        for (int i = 0; i < length; i++) { // Chunks start on a word boundary
+          planWords[plans[i]] |= 1L << i;
+          categoryWords[categories[i]] |= 1L << i;
+          atWeight[weights[i] - Short.MIN_VALUE]++;
+          if ((i & 63) == 63 || i == length - 1) {
+            orWords(index.plans, planWords, firstId + i);
+            orWords(index.categories, categoryWords, firstId + i);
+          }
+        }
+      }
+    );
+    int[][] ids = new int[atWeight.length][];
+    int[] filled = new int[atWeight.length];
+    roster.forEachChunk(
+      count,
+      (firstId, length, plans, categories, weights, hours, competitions) -> {
+        for (int i = 0; i < length; i++) {
+          int slot = weights[i] - Short.MIN_VALUE;
+          if (ids[slot] == null) {
+            ids[slot] = new int[atWeight[slot]];
+          }
+          ids[slot][filled[slot]++] = firstId + i;
+        }
+      }
+    );
+    for (int slot = 0; slot < ids.length; slot++) {
+      if (ids[slot] != null) {
+        index.weights.put(
+          slot + Short.MIN_VALUE,
+          new IdList(ids[slot], filled[slot])
+        );
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Moves collected bits into the words holding an id, for an index no
+   * other thread can see yet, and clears them.
+   */
+  private static void orWords(Bitmap[] bitmaps, long[] words, int id) {
+    for (int b = 0; b < bitmaps.length; b++) {
+      if (words[b] != 0) {
+        bitmaps[b].orPlain(id, words[b]);
+        words[b] = 0;
+      }
+    }
+  }
+
+  /**
+   * Adds a newly registered athlete.
+   *
+   * @param id      The id of the athlete.
+   * @param athlete The athlete.
+   */
+  public void add(int id, Athlete athlete) {
+    plans[athlete.getTrainingPlan().ordinal()].set(id);
+    categories[athlete.getWeightCategory().ordinal()].set(id);
+    weights.computeIfAbsent(athlete.getCurrentWeight(), w -> new IdList()).add(id);
+  }
+
+  /**
+   * Moves an athlete to a new weight and weight category. Changes to one
+   * athlete must not run concurrently.
+   *
+   * @param id         The id of the athlete.
+   * @param fromWeight The previous weight.
+   * @param from       The previous weight category.
+   * @param toWeight   The new weight.
+   * @param to         The new weight category.
+   */
+  public void move(
+    int id,
+    int fromWeight,
+    WeightCategory from,
+    int toWeight,
+    WeightCategory to
+  ) {
+    if (from != to) {
+      categories[to.ordinal()].set(id);
+      categories[from.ordinal()].clear(id);
+    }
+    if (fromWeight != toWeight) {
+      weights.computeIfAbsent(toWeight, w -> new IdList()).add(id);
+      IdList previous = weights.get(fromWeight);
+      if (previous != null) {
+        previous.remove(id);
+      }
+    }
+  }
+
+  /**
+   * Returns the athletes on a training plan.
+   *
+   * @param plan The training plan.
+   * @param size The number of athletes to consider, from id 0.
+   * @return The ids of the athletes as a bitmap.
+   */
+  public BitSet plan(TrainingPlan plan, int size) {
+    return plans[plan.ordinal()].copy(size);
+  }
+
+  /**
+   * Returns the athletes in a weight category.
+   *
+   * @param weightCategory The weight category.
+   * @param size           The number of athletes to consider, from id 0.
+   * @return The ids of the athletes as a bitmap.
+   */
+  public BitSet category(WeightCategory weightCategory, int size) {
+    return categories[weightCategory.ordinal()].copy(size);
+  }
+
+  /**
+   * Returns the athletes whose current weight lies in a range.
+   *
+   * @param minWeight The lowest weight, inclusive.
+   * @param maxWeight The highest weight, inclusive.
+   * @param size      The number of athletes to consider, from id 0.
+   * @return The ids of the athletes as a bitmap.
+   */
+  public BitSet weightBetween(int minWeight, int maxWeight, int size) {
+    BitSet bits = new BitSet(size);
+    if (minWeight <= maxWeight) {
+      for (IdList ids : weights.subMap(minWeight, true, maxWeight, true).values()) {
+        ids.addTo(bits, size);
+      }
+    }
+    return bits;
+  }
+
+  private static Bitmap[] newBitmaps(int count) {
+    Bitmap[] bitmaps = new Bitmap[count];
+    for (int i = 0; i < count; i++) {
+      bitmaps[i] = new Bitmap();
+    }
+    return bitmaps;
+  }
+
+  /**
+   * Growable bitmap whose words are updated atomically.
+   */
+  private static final class Bitmap {
+
+    private volatile long[][] chunks = new long[0][]; // Replaced, never modified, when a chunk is added
+
+    private void set(int id) {
+      WORDS.getAndBitwiseOr(chunkFor(id), wordIn(id), 1L << id);
+    }
+
+    /**
+     * Sets bits in the word holding an id without an atomic update, for a
+     * bitmap no other thread can see yet.
+     */
+    private void orPlain(int id, long bits) {
+      chunkFor(id)[wordIn(id)] |= bits;
+    }
+
+    private void clear(int id) {
+      WORDS.getAndBitwiseAnd(chunkFor(id), wordIn(id), ~(1L << id));
+    }
+
+    /**
+     * Copies the bits below a size. Bits set before that size was published
+     * are all seen.
+     */
+    private BitSet copy(int size) {
+      long[] words = new long[(size + 63) >>> 6];
+      long[][] all = chunks;
+      for (int c = 0; c < all.length; c++) {
+        int start = c << CHUNK_WORD_BITS;
+        if (start >= words.length) {
+          break;
+        }
+        int length = Math.min(CHUNK_WORDS, words.length - start);
+        System.arraycopy(all[c], 0, words, start, length);
+      }
+      if ((size & 63) != 0) {
+        words[words.length - 1] &= (1L << size) - 1; // Drop ids at or past the size
+      }
+      return BitSet.valueOf(words);
+    }
+
+    private static int wordIn(int id) {
+      return (id >>> 6) & (CHUNK_WORDS - 1);
+    }
+
+    private long[] chunkFor(int id) {
+      int index = id >>> CHUNK_BITS;
+      long[][] all = chunks;
+      if (index < all.length) {
+        return all[index];
+      }
+      synchronized (this) {
+        all = chunks;
+        if (index >= all.length) {
+          int length = all.length;
+          all = Arrays.copyOf(all, Math.max(index + 1, length * 2));
+          for (int i = length; i < all.length; i++) {
+            all[i] = new long[CHUNK_WORDS];
+          }
+          chunks = all;
+        }
+        return all[index];
+      }
+    }
+  }
+}
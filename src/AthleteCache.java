@@ -0,0 +1,163 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded cache of the athlete objects built from a {@link ColumnarRoster},
+ * so that athletes looked at again and again, such as a coach's squad, are
+ * handed out without decoding their names and building them anew.
+ *
+ * The cache is a fixed table of sets of four slots; an athlete's id picks
+ * its set. A full set evicts in CLOCK order, an approximation of least
+ * recently used: every hit marks its entry, and the first unmarked entry is
+ * replaced, unmarking those passed over. Reads and writes take no lock.
+ *
+ * A cached athlete is only handed out while its weight and weight category
+ * still match the roster, so a weight change made while the athlete was
+ * being built can never leave an outdated athlete behind; changes should
+ * still be passed to {@link #invalidate} to free the slot. Hits and misses
+ * are counted in the {@link Metrics}.
+ */
+class AthleteCache {
+
+  private static final int WAYS = 4; // Slots per set
+
+  private final ColumnarRoster roster;
+  private final AtomicReferenceArray<Entry> slots;
+  private final int setShift; // Turns a hashed id into a set number
+
+  /**
+   * Creates an empty cache over a roster.
+   *
+   * @param roster   The roster athletes are built from.
+   * @param capacity The number of athletes kept at most, rounded up to a
+   *                 power of two of at least 8, or 0 to cache nothing.
+   */
+  AthleteCache(ColumnarRoster roster, int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("The cache size cannot be negative");
+    }
+    int wanted = Math.min((capacity + WAYS - 1) / WAYS, 1 << 24);
+    int sets = capacity == 0
+      ? 0
+      : Math.max(2, Integer.highestOneBit(Math.max(1, wanted - 1)) << 1);
+    this.roster = roster;
+    this.slots = new AtomicReferenceArray<>(sets * WAYS);
+    this.setShift = Integer.numberOfLeadingZeros(Math.max(sets, 2)) + 1;
+  }
+
+  /**
+   * Returns the athlete with the given id, from the cache if it is there
+   * and up to date, or else built from the roster and cached.
+   *
+   * @param id The id of the athlete.
+   * @return The athlete.
+   */
+  public Athlete get(int id) {
+    if (slots.length() == 0) {
+      return roster.toAthlete(id);
+    }
+    int base = setOf(id);
+    for (int i = base; i < base + WAYS; i++) {
+      Entry entry = slots.get(i);
+      if (entry != null && entry.id == id && isCurrent(entry.athlete, id)) {
+        if (!entry.referenced) {
+          entry.referenced = true; // Only written when it changes
+        }
+        Metrics.CACHE_HITS.increment();
+        return entry.athlete;
+      }
+    }
+    Metrics.CACHE_MISSES.increment();
+    Athlete athlete = roster.toAthlete(id);
+    slots.set(victim(base, id), new Entry(id, athlete));
+    return athlete;
+  }
+
+  /**
+   * Drops an athlete that was just changed.
+   *
+   * @param id The id of the athlete.
+   */
+  public void invalidate(int id) {
+    if (slots.length() == 0) {
+      return;
+    }
+    int base = setOf(id);
+    for (int i = base; i < base + WAYS; i++) {
+      Entry entry = slots.get(i);
+      if (entry != null && entry.id == id) {
+        slots.compareAndSet(i, entry, null);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of athletes cached.
+   *
+   * @return The number of cached athletes.
+   */
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < slots.length(); i++) {
+      if (slots.get(i) != null) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the first slot of the set an id belongs to.
+   */
+  private int setOf(int id) {
+    return ((id * 0x9E3779B9) >>> setShift) * WAYS; // Fibonacci hashing spreads neighbouring ids
+  }
+
+  /**
+   * Picks the slot a new athlete goes in: a free slot or the athlete's own
+   * if there is one, or else the first entry not used since the clock last
+   * passed it.
+   */
+  private int victim(int base, int id) {
+    for (int i = base; i < base + WAYS; i++) {
+      Entry entry = slots.get(i);
+      if (entry == null || entry.id == id) {
+        return i;
+      }
+    }
+    int start = id & (WAYS - 1); // Spreads the sweeps of a set
+    for (int n = 0; n < WAYS; n++) {
+      int i = base + ((start + n) & (WAYS - 1));
+      Entry entry = slots.get(i);
+      if (entry == null || !entry.referenced) {
+        return i;
+      }
+      entry.referenced = false;
+    }
+    return base + start;
+  }
+
+  /**
+   * Tells whether a cached athlete still has the weight held in the roster.
+   */
+  private boolean isCurrent(Athlete athlete, int id) {
+    return (
+      athlete.getCurrentWeight() == roster.getCurrentWeight(id) &&
+      athlete.getWeightCategory() == roster.getWeightCategory(id)
+    );
+  }
+
+  /**
+   * One cached athlete.
+   */
+  private static final class Entry {
+
+    private final int id;
+    private final Athlete athlete;
+    private volatile boolean referenced; // Set by hits, cleared by the clock
+
+    private Entry(int id, Athlete athlete) {
+      this.id = id;
+      this.athlete = athlete;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Compact copy of a roster snapshot that can be loaded without decoding a
+ * single record, written next to the {@link AthleteStore} file each time a
+ * snapshot is taken, e.g. athletes.idx for athletes.db.
+ *
+ * The file holds a header naming the snapshot it belongs to, the roster's
+ * columns as written by {@link ColumnarRoster#write}, the athlete ids in
+ * name order for the {@link AthleteNameIndex}, and a CRC32 of everything
+ * before it. On open the file is mapped and each column is copied into
+ * place in bulk, so startup costs little more than reading the file, and
+ * athletes are only built as objects when they are asked for.
+ *
+ * The snapshot is the source of truth: an index file that is missing,
+ * damaged, or written for another snapshot is ignored, and the registry
+ * falls back to reading the snapshot and writes a new one.
+ */
+abstract class AthleteIndexFile {
+
+  static final int MAGIC = 0x4E534A49; // "NSJI"
+  static final short FORMAT_VERSION = 1;
+  static final int HEADER_SIZE = 32; // magic, version, flags, checkpoint LSN, snapshot length, count, reserved
+
+  /**
+   * Writes the index file of a snapshot and replaces the file at the path
+   * with it in one atomic rename.
+   *
+   * @param path           The path of the index file.
+   * @param checkpointLsn  The checkpoint LSN in the snapshot's header.
+   * @param snapshotLength The length of the snapshot file in bytes.
+   * @param count          The number of athletes in the snapshot.
+   * @param roster         The roster holding at least those athletes.
+   * @param nameOrder      The ids below the count in name order.
+   * @throws IOException if the file cannot be written.
+   */
+  static void write(
+    Path path,
+    long checkpointLsn,
+    long snapshotLength,
+    int count,
+    ColumnarRoster roster,
+    int[] nameOrder
+  ) throws IOException {
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (
+      FileChannel out = FileChannel.open(
+        temp,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE
+      )
+    ) {
+      CRC32 checksum = new CRC32();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) 0);
+      header.putLong(checkpointLsn).putLong(snapshotLength).putInt(count);
+      header.putInt(0).flip();
+      checksum.update(header.duplicate());
+      AthleteStore.writeFully(out, header, 0);
+      long position = roster.write(out, HEADER_SIZE, count, checksum);
+      int idsLength = count * Integer.BYTES;
+      ByteBuffer ids = ByteBuffer.allocate(idsLength + Integer.BYTES); // Then the checksum
+      ids.asIntBuffer().put(nameOrder, 0, count);
+      checksum.update(ids.duplicate().limit(idsLength));
+      ids.putInt(idsLength, (int) checksum.getValue());
+      AthleteStore.writeFully(out, ids, position);
+      AthleteStore.force(out, true);
+    }
+    Files.move(
+      temp,
+      path,
+      StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE
+    );
+  }
+
+  /**
+   * Loads the index file of a snapshot.
+   *
+   * @param path           The path of the index file.
+   * @param checkpointLsn  The checkpoint LSN in the snapshot's header.
+   * @param snapshotLength The length of the snapshot file in bytes.
+   * @return The roster and name order, or null if there is no usable index
+   *         file for that snapshot.
+   * @throws IOException if the file exists but cannot be read.
+   */
+  static Contents read(Path path, long checkpointLsn, long snapshotLength)
+    throws IOException {
+    MappedByteBuffer in;
+    try (
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)
+    ) {
+      long size = channel.size();
+      if (size < HEADER_SIZE + Integer.BYTES || size > Integer.MAX_VALUE) {
+        return null;
+      }
+      in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      Metrics.BYTES_READ.add(size); // All of it is read for the checksum
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    if (
+      in.getInt(0) != MAGIC ||
+      in.getShort(4) != FORMAT_VERSION ||
+      in.getLong(8) != checkpointLsn ||
+      in.getLong(16) != snapshotLength
+    ) {
+      return null; // Left over from another snapshot
+    }
+    int count = in.getInt(24);
+    int end = in.limit() - Integer.BYTES;
+    CRC32 checksum = new CRC32();
+    checksum.update(in.duplicate().limit(end));
+    if ((int) checksum.getValue() != in.getInt(end)) {
+      return null;
+    }
+    in.position(HEADER_SIZE).limit(end);
+    ColumnarRoster roster = ColumnarRoster.read(in, count);
+    IntBuffer ids = in.asIntBuffer();
+    if (ids.remaining() != count) {
+      return null;
+    }
+    int[] nameOrder = new int[count];
+    ids.get(nameOrder);
+    return new Contents(roster, nameOrder);
+  }
+
+  /**
+   * What an index file holds.
+   *
+   * @param roster    The roster of the snapshot.
+   * @param nameOrder The ids of its athletes in name order.
+   */
+  record Contents(ColumnarRoster roster, int[] nameOrder) {}
+}
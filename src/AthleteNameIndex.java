@@ -0,0 +1,216 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Index from athlete names to athlete ids.
+ *
+ * Names are keyed on the form produced by {@link Athlete#formatName}, so any
+ * capitalisation of a name finds the same athletes. Exact lookups go through
+ * a hash map and prefix lookups through a sorted map holding the same keys.
+ *
+ * Both maps are concurrent and each name's id list has its own lock, so
+ * registrations of different names never wait for each other and lookups
+ * run alongside them.
+ *
+ * Filling the maps one name at a time is slow for a large roster, so an
+ * index can also start from a base: the ids of the athletes already in the
+ * roster sorted by name, as saved in the {@link AthleteIndexFile}. The base
+ * is searched by bisection, reading the names from the roster, and only
+ * athletes added after it go into the maps. Lookups combine both.
+ */
+class AthleteNameIndex {
+
+  private static final int[] NO_IDS = new int[0];
+
+  private final ColumnarRoster roster; // Holds the names of the base
+  private final int[] base; // Ids sorted by key, then id; all lower than any id added later
+  private final ConcurrentHashMap<String, IdList> exact = new ConcurrentHashMap<>(); // Name -> ids
+  private final ConcurrentNavigableMap<String, IdList> sorted = new ConcurrentSkipListMap<>(); // Same entries, in name order
+
+  /**
+   * Creates an empty index.
+   */
+  AthleteNameIndex() {
+    this(null, NO_IDS);
+  }
+
+  /**
+   * Creates an index over athletes already in a roster.
+   *
+   * @param roster The roster holding the athletes.
+   * @param base   The ids of the athletes, sorted as by {@link #sortedIds}.
+   */
+  AthleteNameIndex(ColumnarRoster roster, int[] base) {
+    this.roster = roster;
+    this.base = base;
+  }
+
+  /**
+   * Normalizes a name or name prefix to the key used by the index.
+   *
+   * @param name The name to normalize.
+   * @return The normalized key.
+   */
+  static String normalize(String name) {
+    return Athlete.formatName(name.trim());
+  }
+
+  /**
+   * Adds an athlete to the index.
+   *
+   * @param name The name of the athlete.
+   * @param id   The id of the athlete.
+   */
+  public void add(String name, int id) {
+    String key = normalize(name);
+    IdList ids = exact.get(key);
+    if (ids == null) {
+      ids = exact.computeIfAbsent(
+        key,
+        k -> {
+          IdList created = new IdList();
+          sorted.put(k, created);
+          return created;
+        }
+      );
+    }
+    ids.add(id);
+  }
+
+  /**
+   * Finds the athletes with exactly the given name, ignoring case.
+   *
+   * @param name The name to look up.
+   * @return The ids of the matching athletes, in registration order.
+   */
+  public int[] find(String name) {
+    String key = normalize(name);
+    int from = lowerBound(key);
+    int to = from;
+    while (to < base.length && keyOf(base[to]).equals(key)) {
+      to++;
+    }
+    IdList ids = exact.get(key);
+    int[] added = ids == null ? NO_IDS : ids.toArray();
+    if (from == to) {
+      return added;
+    }
+    int[] all = Arrays.copyOfRange(base, from, to + added.length); // Base ids come first
+    System.arraycopy(added, 0, all, to - from, added.length);
+    return all;
+  }
+
+  /**
+   * Finds the athletes whose name starts with the given prefix, ignoring case.
+   *
+   * @param prefix The prefix to look up, e.g. "jo" for all Jo* athletes.
+   * @param limit  The maximum number of ids to return.
+   * @return The ids of the matching athletes, in name order.
+   */
+  public int[] findByPrefix(String prefix, int limit) {
+    String key = normalize(prefix);
+    String end = key + Character.MAX_VALUE;
+    int next = lowerBound(key); // Next base entry to take
+    int baseEnd = lowerBound(end);
+    int[] result = new int[Math.min(limit, 64)];
+    int n = 0;
+    for (Map.Entry<String, IdList> entry : sorted
+      .subMap(key, true, end, false)
+      .entrySet()) {
+      int before = Math.min(baseEnd, upperBound(entry.getKey(), next)); // Base entries up to this name
+      while (next < before && n < limit) {
+        result = append(result, n++, base[next++], limit);
+      }
+      for (int id : entry.getValue().toArray()) {
+        if (n == limit) {
+          return Arrays.copyOf(result, n);
+        }
+        result = append(result, n++, id, limit);
+      }
+    }
+    while (next < baseEnd && n < limit) {
+      result = append(result, n++, base[next++], limit);
+    }
+    return Arrays.copyOf(result, n);
+  }
+
+  /**
+   * Returns the ids below a count sorted by key, then by id, as needed to
+   * start a new index from them. The base is already sorted, so only the
+   * names added to the maps since are placed into it.
+   *
+   * @param count The first id left out.
+   * @return The sorted ids.
+   */
+  public int[] sortedIds(int count) {
+    int[] ids = new int[count];
+    int n = 0;
+    int copied = 0; // Base entries copied so far
+    for (Map.Entry<String, IdList> entry : sorted.entrySet()) {
+      int[] added = entry.getValue().toArray();
+      if (added.length == 0 || added[0] >= count) {
+        continue;
+      }
+      int end = upperBound(entry.getKey(), copied); // Added ids follow the base ids of the key
+      System.arraycopy(base, copied, ids, n, end - copied);
+      n += end - copied;
+      copied = end;
+      for (int i = 0; i < added.length && added[i] < count; i++) {
+        ids[n++] = added[i];
+      }
+    }
+    System.arraycopy(base, copied, ids, n, base.length - copied);
+    return ids;
+  }
+
+  /**
+   * Returns the position of the first base entry whose key is not lower
+   * than the given key.
+   */
+  private int lowerBound(String key) {
+    int low = 0;
+    int high = base.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (keyOf(base[middle]).compareTo(key) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the position, from a starting point, of the first base entry
+   * whose key is higher than the given key.
+   */
+  private int upperBound(String key, int from) {
+    int low = from;
+    int high = base.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (keyOf(base[middle]).compareTo(key) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private String keyOf(int id) {
+    return normalize(roster.getName(id));
+  }
+
+  private static int[] append(int[] result, int n, int id, int limit) {
+    if (n == result.length) {
+      result = Arrays.copyOf(result, Math.min(limit, n * 2));
+    }
+    result[n] = id;
+    return result;
+  }
+}
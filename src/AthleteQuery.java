@@ -0,0 +1,183 @@
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Filter over the roster built from predicates on plan, weight category,
+ * weight, coaching hours and competitions entered, e.g.
+ *
+ * <pre>
+ * new AthleteQuery()
+ *   .plans(TrainingPlan.INTERMEDIATE, TrainingPlan.ELITE)
+ *   .nearUpperLimit(2)
+ * </pre>
+ *
+ * for Intermediate or Elite athletes within 2 kg of their category's upper
+ * limit. Every predicate that is set must hold. Plan, category and weight
+ * predicates are answered from the bitmaps of an {@link AthleteBitmapIndex};
+ * coaching hours and competitions are then checked in the roster's columns
+ * for the athletes left, so no athlete object is built.
+ */
+class AthleteQuery {
+
+  private Set<TrainingPlan> plans; // Null for any plan
+  private Set<WeightCategory> categories; // Null for any category
+  private int minWeight = Integer.MIN_VALUE;
+  private int maxWeight = Integer.MAX_VALUE;
+  private int minCoachingHours = Integer.MIN_VALUE;
+  private int maxCoachingHours = Integer.MAX_VALUE;
+  private int minCompetitions = Integer.MIN_VALUE;
+  private int maxCompetitions = Integer.MAX_VALUE;
+  private int nearUpperLimit = -1; // Kilograms below the category's upper limit, or -1 for none
+
+  /**
+   * Keeps athletes on one of the given training plans.
+   *
+   * @param plans The training plans.
+   * @return This query.
+   */
+  public AthleteQuery plans(TrainingPlan... plans) {
+    this.plans = EnumSet.noneOf(TrainingPlan.class);
+    Collections.addAll(this.plans, plans);
+    return this;
+  }
+
+  /**
+   * Keeps athletes in one of the given weight categories.
+   *
+   * @param categories The weight categories.
+   * @return This query.
+   */
+  public AthleteQuery categories(WeightCategory... categories) {
+    this.categories = EnumSet.noneOf(WeightCategory.class);
+    Collections.addAll(this.categories, categories);
+    return this;
+  }
+
+  /**
+   * Keeps athletes whose current weight lies in a range.
+   *
+   * @param min The lowest weight in kilograms, inclusive.
+   * @param max The highest weight in kilograms, inclusive.
+   * @return This query.
+   */
+  public AthleteQuery weightBetween(int min, int max) {
+    this.minWeight = min;
+    this.maxWeight = max;
+    return this;
+  }
+
+  /**
+   * Keeps athletes whose private coaching hours lie in a range.
+   *
+   * @param min The fewest hours per week, inclusive.
+   * @param max The most hours per week, inclusive.
+   * @return This query.
+   */
+  public AthleteQuery coachingHoursBetween(int min, int max) {
+    this.minCoachingHours = min;
+    this.maxCoachingHours = max;
+    return this;
+  }
+
+  /**
+   * Keeps athletes whose number of competitions entered lies in a range.
+   *
+   * @param min The fewest competitions, inclusive.
+   * @param max The most competitions, inclusive.
+   * @return This query.
+   */
+  public AthleteQuery competitionsBetween(int min, int max) {
+    this.minCompetitions = min;
+    this.maxCompetitions = max;
+    return this;
+  }
+
+  /**
+   * Keeps athletes at most the given number of kilograms below the upper
+   * limit of their own weight category, i.e. close to moving up.
+   *
+   * @param kilograms The margin below the upper limit.
+   * @return This query.
+   */
+  public AthleteQuery nearUpperLimit(int kilograms) {
+    this.nearUpperLimit = kilograms;
+    return this;
+  }
+
+  /**
+   * Finds the athletes matching every predicate.
+   *
+   * @param index  The bitmap index over the roster.
+   * @param roster The roster.
+   * @return The ids of the matching athletes as a bitmap.
+   */
+  public BitSet select(AthleteBitmapIndex index, ColumnarRoster roster) {
+    int size = roster.size();
+    BitSet result = new BitSet(size);
+    result.set(0, size);
+    if (plans != null) {
+      BitSet any = new BitSet(size);
+      for (TrainingPlan plan : plans) {
+        any.or(index.plan(plan, size));
+      }
+      result.and(any);
+    }
+    if (categories != null) {
+      BitSet any = new BitSet(size);
+      for (WeightCategory category : categories) {
+        any.or(index.category(category, size));
+      }
+      result.and(any);
+    }
+    if (minWeight != Integer.MIN_VALUE || maxWeight != Integer.MAX_VALUE) {
+      result.and(index.weightBetween(minWeight, maxWeight, size));
+    }
+    if (nearUpperLimit >= 0) {
+      BitSet near = new BitSet(size);
+      Set<WeightCategory> candidates = categories == null
+        ? EnumSet.allOf(WeightCategory.class)
+        : categories;
+      for (WeightCategory category : candidates) {
+        int upper = category.getUpperWeightLimit();
+        BitSet inRange = index.weightBetween(upper - nearUpperLimit, upper, size);
+        inRange.and(index.category(category, size));
+        near.or(inRange);
+      }
+      result.and(near);
+    }
+    if (filtersColumns()) {
+      for (
+        int id = result.nextSetBit(0);
+        id >= 0;
+        id = result.nextSetBit(id + 1)
+      ) {
+        if (!matchesColumns(roster, id)) {
+          result.clear(id);
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean filtersColumns() {
+    return (
+      minCoachingHours != Integer.MIN_VALUE ||
+      maxCoachingHours != Integer.MAX_VALUE ||
+      minCompetitions != Integer.MIN_VALUE ||
+      maxCompetitions != Integer.MAX_VALUE
+    );
+  }
+
+  private boolean matchesColumns(ColumnarRoster roster, int id) {
+    int hours = roster.getPrivateCoachingHours(id);
+    int competitions = roster.getCompetitionsEntered(id);
+    return (
+      hours >= minCoachingHours &&
+      hours <= maxCoachingHours &&
+      competitions >= minCompetitions &&
+      competitions <= maxCompetitions
+    );
+  }
+}
@@ -0,0 +1,758 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Front door to the athlete data and the indexes kept over it.
+ *
+ * Every change is first appended to a {@link WriteAheadLog} and then applied
+ * to the in-memory {@link ColumnarRoster}, name index and
+ * {@link RosterAggregates}, which answer all reads, and every weigh-in is
+ * added to the {@link WeightHistory}. The {@link AthleteStore} file holds a
+ * snapshot of the roster, and an {@link AthleteIndexFile} next to it the
+ * same roster in columns; on open the index file is mapped, or the snapshot
+ * read if the index file does not match it, and the log entries made after
+ * the snapshot are replayed. A background compactor folds the log into a
+ * new snapshot once it grows past {@link #COMPACT_THRESHOLD}, so startup
+ * never replays more than that. The weight history is loaded, and the
+ * {@link AthleteTrigramIndex} of names built, in the background; only calls
+ * that need them wait for them. Athletes read one at a time are kept in an
+ * {@link AthleteCache}; scans over the whole roster build their athletes
+ * afresh so as not to push the hot ones out.
+ *
+ * Every method may be called from several threads at once. The log
+ * serializes only the write of each entry, which fixes the athlete's id;
+ * the indexes are then updated without a registry-wide lock.
+ */
+class AthleteRegistry implements Closeable {
+
+  static final long COMPACT_THRESHOLD = 4L << 20; // Log bytes that trigger a new snapshot
+  static final int DEFAULT_CACHE_SIZE = 10_000; // Athletes kept built for repeated reads
+  private static final long COMPACT_INTERVAL_SECONDS = 10; // How often the compactor checks the log
+  private static final int ATHLETE_LOCKS = 64; // Power of two
+
+  private final Path path;
+  private final WriteAheadLog log;
+  private final AthleteNameIndex nameIndex;
+  private final AthleteTrigramIndex trigramIndex; // Built in the background, then kept up by registrations
+  private final ColumnarRoster roster;
+  private final RosterAggregates aggregates;
+  private final AthleteBitmapIndex bitmaps;
+  private final AthleteCache cache;
+  private final CompletableFuture<WeightHistory> history; // Loaded on the compactor thread
+  private final Object[] athleteLocks = new Object[ATHLETE_LOCKS]; // Serialize changes to one athlete
+  private final ReadWriteLock cut = new ReentrantReadWriteLock(); // Changes share it, a checkpoint takes it alone
+  private final Object checkpointLock = new Object(); // One checkpoint at a time
+  private final ScheduledExecutorService compactor;
+
+  private AthleteRegistry(
+    Path path,
+    ColumnarRoster roster,
+    RosterAggregates aggregates,
+    AthleteBitmapIndex bitmaps,
+    AthleteNameIndex nameIndex,
+    WriteAheadLog log,
+    AthleteCache cache
+  ) {
+    this.path = path;
+    this.roster = roster;
+    this.aggregates = aggregates;
+    this.bitmaps = bitmaps;
+    this.cache = cache;
+    for (int i = 0; i < athleteLocks.length; i++) {
+      athleteLocks[i] = new Object();
+    }
+    this.nameIndex = nameIndex;
+    this.trigramIndex = new AthleteTrigramIndex(roster);
+    this.log = log;
+    this.compactor =
+      Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "athlete-log-compactor");
+        thread.setDaemon(true);
+        return thread;
+      });
+    this.history =
+      CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return WeightHistory.open(historyPathFor(path));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        },
+        compactor
+      );
+  }
+
+  /**
+   * Opens the registry over the data file at the given path: loads the
+   * snapshot from its index file, or from the data file itself if the index
+   * file does not match it, replays the write-ahead log next to it and
+   * builds the indexes. Up to {@link #DEFAULT_CACHE_SIZE} athletes are
+   * cached.
+   *
+   * @param path The path of the data file.
+   * @return The opened registry.
+   * @throws IOException if the snapshot or the log cannot be read.
+   */
+  public static AthleteRegistry open(Path path) throws IOException {
+    return open(path, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Opens the registry over the data file at the given path with a cache
+   * of the given size.
+   *
+   * @param path      The path of the data file.
+   * @param cacheSize The number of athletes cached at most, 0 for none.
+   * @return The opened registry.
+   * @throws IOException if the snapshot or the log cannot be read.
+   */
+  public static AthleteRegistry open(Path path, int cacheSize)
+    throws IOException {
+    if (cacheSize < 0) {
+      throw new IllegalArgumentException("The cache size cannot be negative");
+    }
+    long start = System.nanoTime();
+    ColumnarRoster roster;
+    RosterAggregates aggregates;
+    AthleteBitmapIndex bitmaps;
+    AthleteNameIndex nameIndex;
+    long checkpointLsn = AthleteStore.readCheckpointLsn(path);
+    AthleteIndexFile.Contents contents = checkpointLsn < 0
+      ? null
+      : AthleteIndexFile.read(
+        indexPathFor(path),
+        checkpointLsn,
+        Files.size(path)
+      );
+    if (contents != null) {
+      roster = contents.roster();
+      aggregates = RosterAggregates.of(roster);
+      bitmaps = AthleteBitmapIndex.of(roster);
+      nameIndex = new AthleteNameIndex(roster, contents.nameOrder());
+    } else {
+      RosterAggregates scannedAggregates = new RosterAggregates();
+      AthleteBitmapIndex scannedBitmaps = new AthleteBitmapIndex();
+      AthleteNameIndex scannedNames = new AthleteNameIndex();
+      try (AthleteStore store = AthleteStore.open(path)) {
+        ColumnarRoster scanned = new ColumnarRoster(store.size());
+        checkpointLsn = store.getCheckpointLsn();
+        int[] nextId = { 0 };
+        store.forEach(athlete ->
+          index(
+            scanned,
+            scannedAggregates,
+            scannedBitmaps,
+            scannedNames,
+            nextId[0]++,
+            athlete
+          )
+        );
+        roster = scanned;
+      }
+      aggregates = scannedAggregates;
+      bitmaps = scannedBitmaps;
+      nameIndex = scannedNames;
+      if (roster.size() > 0) {
+        try {
+          writeIndex(path, checkpointLsn, roster.size(), roster, nameIndex); // Spare the next startup the scan
+        } catch (IOException e) {
+          System.err.println("Error writing athlete index: " + e.getMessage());
+        }
+      }
+    }
+    int snapshotSize = roster.size();
+    WriteAheadLog log = WriteAheadLog.open(
+      logPathFor(path),
+      checkpointLsn,
+      snapshotSize,
+      new WriteAheadLog.Replay() {
+        @Override
+        public void register(int id, Athlete athlete) {
+          index(roster, aggregates, bitmaps, nameIndex, id, athlete);
+        }
+
+        @Override
+        public void changeWeight(
+          int id,
+          int currentWeight,
+          WeightCategory weightCategory
+        ) {
+          reweigh(roster, aggregates, bitmaps, id, currentWeight, weightCategory);
+        }
+      }
+    );
+    log.discardSealed(checkpointLsn); // Left behind if a crash followed a checkpoint
+    AthleteRegistry registry = new AthleteRegistry(
+      path,
+      roster,
+      aggregates,
+      bitmaps,
+      nameIndex,
+      log,
+      new AthleteCache(roster, cacheSize)
+    );
+    registry.compactor.execute(registry.trigramIndex::catchUp); // So the first similar-name search need not build it
+    registry.compactor.scheduleWithFixedDelay(
+      registry::compactIfNeeded,
+      COMPACT_INTERVAL_SECONDS,
+      COMPACT_INTERVAL_SECONDS,
+      TimeUnit.SECONDS
+    );
+    Metrics.OPEN.recordSince(start);
+    return registry;
+  }
+
+  /**
+   * Returns the number of registered athletes.
+   *
+   * @return The number of registered athletes.
+   */
+  public int size() {
+    return roster.size();
+  }
+
+  /**
+   * Logs a newly registered athlete and adds it to the indexes.
+   *
+   * @param athlete The athlete to register.
+   * @return The id assigned to the athlete.
+   * @throws IOException if the athlete cannot be logged.
+   * @throws IllegalArgumentException if the weight cannot be stored.
+   */
+  public int register(Athlete athlete) throws IOException {
+    ColumnarRoster.checkWeight(athlete.getCurrentWeight()); // Before it is logged
+    long start = System.nanoTime();
+    cut.readLock().lock();
+    try {
+      int id = log.register(athlete);
+      index(roster, aggregates, bitmaps, nameIndex, id, athlete);
+      history().record(id, LocalDate.now(), athlete.getCurrentWeight());
+      trigramIndex.tryCatchUp();
+      return id;
+    } finally {
+      cut.readLock().unlock();
+      Metrics.REGISTER.recordSince(start);
+    }
+  }
+
+  /**
+   * Logs a batch of athletes with a single write and adds them to the indexes.
+   *
+   * @param athletes The athletes to register, in order.
+   * @return The id assigned to the first athlete of the batch.
+   * @throws IOException if the athletes cannot be logged.
+   * @throws IllegalArgumentException if a weight cannot be stored.
+   */
+  public int registerAll(List<Athlete> athletes) throws IOException {
+    for (Athlete athlete : athletes) {
+      ColumnarRoster.checkWeight(athlete.getCurrentWeight()); // Before the batch is logged
+    }
+    long start = System.nanoTime();
+    cut.readLock().lock();
+    try {
+      int firstId = log.registerAll(athletes);
+      int[] weights = new int[athletes.size()];
+      for (int i = 0; i < athletes.size(); i++) {
+        index(roster, aggregates, bitmaps, nameIndex, firstId + i, athletes.get(i));
+        weights[i] = athletes.get(i).getCurrentWeight();
+      }
+      history().recordAll(firstId, LocalDate.now(), weights);
+      compactor.execute(trigramIndex::tryCatchUp); // Off the importing thread
+      return firstId;
+    } finally {
+      cut.readLock().unlock();
+      Metrics.REGISTER_BATCH.recordSince(start);
+    }
+  }
+
+  /**
+   * Records a new weight, and the weight category that goes with it, for a
+   * registered athlete, e.g. after a weigh-in.
+   *
+   * @param id             The id of the athlete.
+   * @param currentWeight  The new current weight in kilograms.
+   * @param weightCategory The new weight category.
+   * @throws IOException if the change cannot be logged.
+   * @throws IllegalArgumentException if the weight cannot be stored.
+   */
+  public void changeWeight(int id, int currentWeight, WeightCategory weightCategory)
+    throws IOException {
+    if (id < 0 || id >= roster.size()) {
+      throw new IndexOutOfBoundsException("No athlete with id " + id);
+    }
+    ColumnarRoster.checkWeight(currentWeight); // Before it is logged
+    long start = System.nanoTime();
+    cut.readLock().lock();
+    try {
+      synchronized (athleteLocks[id & (ATHLETE_LOCKS - 1)]) { // Log and apply in the same order
+        logAndReweigh(id, currentWeight, weightCategory);
+        history().record(id, LocalDate.now(), currentWeight);
+      }
+    } finally {
+      cut.readLock().unlock();
+      Metrics.CHANGE_WEIGHT.recordSince(start);
+    }
+  }
+
+  /**
+   * Moves every athlete whose weight no longer fits their weight category
+   * into the category that matches it, e.g. after the category limits have
+   * changed. Each move is logged like a weight change, but is not a
+   * weigh-in. Athletes whose weight no category covers keep theirs.
+   *
+   * @return The number of athletes whose category changed.
+   * @throws IOException if a change cannot be logged.
+   */
+  public int recategorize() throws IOException {
+    int changed = 0;
+    int count = roster.size();
+    for (int id = 0; id < count; id++) {
+      int ordinal = WeightClassifier.ordinalOf(roster.getCurrentWeight(id));
+      if (ordinal < 0 || ordinal == roster.getWeightCategory(id).ordinal()) {
+        continue; // Most athletes still fit, so only movers take the locks
+      }
+      cut.readLock().lock();
+      try {
+        synchronized (athleteLocks[id & (ATHLETE_LOCKS - 1)]) {
+          int weight = roster.getCurrentWeight(id); // Again, as a weigh-in may have come in
+          WeightCategory category = WeightClassifier.classify(weight);
+          if (category != null && category != roster.getWeightCategory(id)) {
+            logAndReweigh(id, weight, category);
+            changed++;
+          }
+        }
+      } finally {
+        cut.readLock().unlock();
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Logs a change of weight and applies it to the roster, its indexes and
+   * the cache. Called under the read side of the cut and the athlete's lock.
+   */
+  private void logAndReweigh(
+    int id,
+    int currentWeight,
+    WeightCategory weightCategory
+  ) throws IOException {
+    log.changeWeight(id, currentWeight, weightCategory);
+    reweigh(roster, aggregates, bitmaps, id, currentWeight, weightCategory);
+    cache.invalidate(id); // After the roster has the new weight
+  }
+
+  /**
+   * Returns the columnar copy of the roster kept in memory for scans.
+   *
+   * @return The roster, indexed by athlete id.
+   */
+  public ColumnarRoster getRoster() {
+    return roster;
+  }
+
+  /**
+   * Returns the running totals over the roster, kept up to date with every
+   * change.
+   *
+   * @return The roster aggregates.
+   */
+  public RosterAggregates getAggregates() {
+    return aggregates;
+  }
+
+  /**
+   * Returns the weigh-in history of every athlete, waiting for it to be
+   * loaded. Registrations and weight changes add to it.
+   *
+   * @return The weight history.
+   * @throws IOException if the history could not be loaded.
+   */
+  public WeightHistory getWeightHistory() throws IOException {
+    return history();
+  }
+
+  /**
+   * Reads the athlete with the given id, from the cache if it was read
+   * recently. The athlete may be shared with other callers and must not be
+   * changed.
+   *
+   * @param id The id of the athlete.
+   * @return The athlete.
+   * @throws IOException if the athlete cannot be read.
+   */
+  public Athlete get(int id) throws IOException {
+    return cache.get(id); // Too quick to time; counted as a cache hit or miss
+  }
+
+  /**
+   * Reads every athlete in registration order.
+   *
+   * @return The list of all athletes.
+   * @throws IOException if the athletes cannot be read.
+   */
+  public List<Athlete> readAll() throws IOException {
+    return stream().toList();
+  }
+
+  /**
+   * Returns a lazy stream over every athlete in registration order.
+   *
+   * @return A stream that builds athletes as it reaches them.
+   * @throws IOException if the athletes cannot be read.
+   */
+  public Stream<Athlete> stream() throws IOException {
+    return IntStream.range(0, roster.size()).mapToObj(roster::toAthlete);
+  }
+
+  /**
+   * Reads one page of athletes in registration order.
+   *
+   * @param cursor The cursor returned with the previous page, 0 for the first page.
+   * @param limit  The maximum number of athletes on the page.
+   * @return The page of athletes, whose next cursor is -1 after the last athlete.
+   * @throws IOException if an athlete cannot be read.
+   */
+  public Page page(int cursor, int limit)
+    throws IOException {
+    int size = roster.size();
+    int end = (int) Math.min((long) cursor + limit, size);
+    List<Athlete> athletes = new ArrayList<>(Math.max(0, end - cursor));
+    for (int id = cursor; id < end; id++) {
+      athletes.add(roster.toAthlete(id));
+    }
+    return new Page(athletes, end < size ? end : -1);
+  }
+
+  /**
+   * Finds the ids of the athletes with the given name, ignoring case.
+   *
+   * @param name The name to look up.
+   * @return The ids of the matching athletes.
+   */
+  public int[] findIdsByName(String name) {
+    long start = System.nanoTime();
+    int[] ids = nameIndex.find(name);
+    Metrics.LOOKUP_NAME.recordSince(start);
+    return ids;
+  }
+
+  /**
+   * Finds the ids of the athletes whose name starts with the given prefix,
+   * ignoring case.
+   *
+   * @param prefix The prefix to look up.
+   * @param limit  The maximum number of ids to return.
+   * @return The ids of the matching athletes, in name order.
+   */
+  public int[] findIdsByNamePrefix(String prefix, int limit) {
+    long start = System.nanoTime();
+    int[] ids = nameIndex.findByPrefix(prefix, limit);
+    Metrics.LOOKUP_PREFIX.recordSince(start);
+    return ids;
+  }
+
+  /**
+   * Finds the athletes whose names are closest to the given name, allowing
+   * for typos, e.g. John Smith for "Jon Smth".
+   *
+   * @param name  The name to look up.
+   * @param limit The maximum number of ids to return.
+   * @return The ids of the matching athletes, closest first.
+   */
+  public int[] findIdsBySimilarName(String name, int limit) {
+    long start = System.nanoTime();
+    int[] ids = trigramIndex.search(name, limit);
+    Metrics.LOOKUP_SIMILAR.recordSince(start);
+    return ids;
+  }
+
+  /**
+   * Finds the athletes with the given name, ignoring case.
+   *
+   * @param name The name to look up.
+   * @return The matching athletes.
+   * @throws IOException if an athlete cannot be read.
+   */
+  public List<Athlete> findByName(String name) throws IOException {
+    return getAll(findIdsByName(name));
+  }
+
+  /**
+   * Finds the athletes whose name starts with the given prefix, ignoring case.
+   *
+   * @param prefix The prefix to look up.
+   * @param limit  The maximum number of athletes to return.
+   * @return The matching athletes, in name order.
+   * @throws IOException if an athlete cannot be read.
+   */
+  public List<Athlete> findByNamePrefix(String prefix, int limit)
+    throws IOException {
+    return getAll(findIdsByNamePrefix(prefix, limit));
+  }
+
+  /**
+   * Finds the athletes whose names are closest to the given name, allowing
+   * for typos.
+   *
+   * @param name  The name to look up.
+   * @param limit The maximum number of athletes to return.
+   * @return The matching athletes, closest first.
+   * @throws IOException if an athlete cannot be read.
+   */
+  public List<Athlete> findBySimilarName(String name, int limit)
+    throws IOException {
+    return getAll(findIdsBySimilarName(name, limit));
+  }
+
+  /**
+   * Finds the athletes matching a query.
+   *
+   * @param query The query.
+   * @return The ids of the matching athletes as a bitmap.
+   */
+  public BitSet select(AthleteQuery query) {
+    long start = System.nanoTime();
+    BitSet matches = query.select(bitmaps, roster);
+    Metrics.LOOKUP_QUERY.recordSince(start);
+    return matches;
+  }
+
+  /**
+   * Finds one page of the athletes matching a query.
+   *
+   * @param query  The query.
+   * @param cursor The lowest id to return.
+   * @param limit  The maximum number of ids to return.
+   * @return The ids of the matching athletes in ascending order.
+   */
+  public int[] findIds(AthleteQuery query, int cursor, int limit) {
+    BitSet matches = select(query);
+    int[] ids = new int[Math.min(limit, matches.cardinality())];
+    int n = 0;
+    for (
+      int id = matches.nextSetBit(cursor);
+      id >= 0 && n < ids.length;
+      id = matches.nextSetBit(id + 1)
+    ) {
+      ids[n++] = id;
+    }
+    return Arrays.copyOf(ids, n);
+  }
+
+  /**
+   * Folds the write-ahead log into a new snapshot of the roster.
+   *
+   * Changes are held back only while the log is sealed; the snapshot itself
+   * is written while registrations carry on. Changes made during the write
+   * may or may not reach the snapshot, but they are in the new log and
+   * replaying them on top of the snapshot gives the same result.
+   *
+   * @throws IOException if the snapshot cannot be written.
+   */
+  public void checkpoint() throws IOException {
+    synchronized (checkpointLock) {
+      long start = System.nanoTime();
+      long checkpointLsn;
+      int count;
+      cut.writeLock().lock();
+      try {
+        checkpointLsn = log.seal();
+        count = roster.size();
+      } finally {
+        cut.writeLock().unlock();
+      }
+      AthleteStore.writeSnapshot(path, checkpointLsn, count, roster::toAthlete);
+      writeIndex(path, checkpointLsn, count, roster, nameIndex);
+      log.discardSealed(checkpointLsn);
+      Metrics.CHECKPOINT.recordSince(start);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    compactor.shutdown();
+    try {
+      compactor.awaitTermination(1, TimeUnit.MINUTES); // Let a running checkpoint finish
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      if (log.activeSize() >= COMPACT_THRESHOLD) {
+        checkpoint(); // Keep the next startup short
+      }
+    } finally {
+      try {
+        log.close();
+      } finally {
+        history().close();
+      }
+    }
+  }
+
+  /**
+   * Returns the path of the weight history kept next to a data file, e.g.
+   * athletes.history for athletes.db.
+   *
+   * @param path The path of the data file.
+   * @return The path of the weight history.
+   */
+  static Path historyPathFor(Path path) {
+    String name = path.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return path.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".history");
+  }
+
+  /**
+   * Returns the path of the index file kept next to a data file, e.g.
+   * athletes.idx for athletes.db.
+   *
+   * @param path The path of the data file.
+   * @return The path of the index file.
+   */
+  static Path indexPathFor(Path path) {
+    String name = path.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return path.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".idx");
+  }
+
+  /**
+   * Returns the path of the write-ahead log kept next to a data file, e.g.
+   * athletes.wal for athletes.db.
+   *
+   * @param path The path of the data file.
+   * @return The path of the log.
+   */
+  static Path logPathFor(Path path) {
+    String name = path.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return path.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".wal");
+  }
+
+  /**
+   * Waits for the weight history to be loaded.
+   */
+  private WeightHistory history() throws IOException {
+    try {
+      return history.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException failed) {
+        throw failed.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Writes the index file of the snapshot just written to a data file.
+   */
+  private static void writeIndex(
+    Path path,
+    long checkpointLsn,
+    int count,
+    ColumnarRoster roster,
+    AthleteNameIndex nameIndex
+  ) throws IOException {
+    AthleteIndexFile.write(
+      indexPathFor(path),
+      checkpointLsn,
+      Files.size(path),
+      count,
+      roster,
+      nameIndex.sortedIds(count)
+    );
+  }
+
+  /**
+   * Run by the compactor: takes a checkpoint once the log is large enough.
+   */
+  private void compactIfNeeded() {
+    if (log.activeSize() < COMPACT_THRESHOLD) {
+      return;
+    }
+    try {
+      checkpoint();
+    } catch (IOException e) {
+      System.err.println("Error compacting athlete log: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Adds a logged athlete to the in-memory indexes.
+   */
+  private static void index(
+    ColumnarRoster roster,
+    RosterAggregates aggregates,
+    AthleteBitmapIndex bitmaps,
+    AthleteNameIndex nameIndex,
+    int id,
+    Athlete athlete
+  ) {
+    bitmaps.add(id, athlete); // Before the roster publishes the id
+    aggregates.add(athlete);
+    roster.put(id, athlete);
+    nameIndex.add(athlete.getName(), id);
+  }
+
+  /**
+   * Applies a logged weight change to the roster and moves the athlete
+   * between category counts and index entries.
+   */
+  private static void reweigh(
+    ColumnarRoster roster,
+    RosterAggregates aggregates,
+    AthleteBitmapIndex bitmaps,
+    int id,
+    int currentWeight,
+    WeightCategory weightCategory
+  ) {
+    int previousWeight = roster.getCurrentWeight(id);
+    roster.setCurrentWeight(id, currentWeight);
+    WeightCategory previous = roster.setWeightCategory(id, weightCategory);
+    aggregates.move(roster.getTrainingPlan(id), previous, weightCategory);
+    bitmaps.move(id, previousWeight, previous, currentWeight, weightCategory);
+  }
+
+  private List<Athlete> getAll(int[] ids) throws IOException {
+    List<Athlete> athletes = new ArrayList<>(ids.length);
+    for (int id : ids) {
+      athletes.add(get(id));
+    }
+    return athletes;
+  }
+
+  /**
+   * One page of athletes and the cursor at which the next page starts.
+   *
+   * @param athletes   The athletes on the page.
+   * @param nextCursor The cursor of the next page, or -1 if there is none.
+   */
+  record Page(List<Athlete> athletes, int nextCursor) {
+    /**
+     * Returns whether more athletes follow this page.
+     *
+     * @return true if there is a next page, false otherwise.
+     */
+    public boolean hasNext() {
+      return nextCursor >= 0;
+    }
+  }
+}
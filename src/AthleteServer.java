@@ -0,0 +1,549 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless HTTP front end for registration and queries, so the front desk,
+ * web site and kiosks can use the system at the same time.
+ *
+ * <pre>
+ * POST /athletes                  register the athlete in the JSON body
+ * GET  /athletes?name=...         athletes with exactly that name
+ * GET  /athletes?prefix=...       athletes whose name starts with the prefix
+ * GET  /athletes?similar=...      athletes with the closest names, allowing typos
+ * GET  /athletes?cursor=0&limit=50 one page of all athletes
+ * GET  /athletes?plan=Elite,...    one page of the athletes matching filters
+ * GET  /invoices/{id}             monthly invoice of an athlete
+ * GET  /stats                     roster totals for dashboards
+ * GET  /weights/{id}?from=&to=     weigh-ins of an athlete and their trend
+ * POST /weights/{id}              record the weigh-in in the JSON body
+ * </pre>
+ *
+ * Filters may be combined and all must hold: plan and category take comma
+ * separated names, minWeight/maxWeight, minCoachingHours/maxCoachingHours
+ * and minCompetitions/maxCompetitions take bounds, and nearUpperLimit keeps
+ * athletes within that many kilograms of their category's upper limit.
+ *
+ * The JSON body of a registration has the keys of a {@link BulkImporter}
+ * JSON-lines row and goes through the same validation. A weigh-in has a
+ * "weight" and optionally a "category"; without one the athlete moves to
+ * the category that matches the weight, if any. Requests run on
+ * virtual threads where the JDK has them, and on a small pool otherwise,
+ * all against the shared registry without further locking.
+ */
+class AthleteServer {
+
+  private static final int DEFAULT_LIMIT = 50; // Athletes per page when no limit is given
+  private static final int MAX_LIMIT = 1000; // Largest page served
+  private static final int DEFAULT_TREND_WEEKS = 8; // Weeks the weight trend covers when none are given
+  private static final String[] WEIGH_IN_FIELDS = { "weight", "category" };
+  private static final List<String> FILTERS = List.of(
+    "plan",
+    "category",
+    "minWeight",
+    "maxWeight",
+    "minCoachingHours",
+    "maxCoachingHours",
+    "minCompetitions",
+    "maxCompetitions",
+    "nearUpperLimit"
+  );
+
+  private final AthleteRegistry registry;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Creates a server over the registry, bound to the given port.
+   *
+   * @param registry The registry to serve.
+   * @param port     The port to listen on, or 0 for any free port.
+   * @throws IOException if the port cannot be bound.
+   */
+  AthleteServer(AthleteRegistry registry, int port) throws IOException {
+    this.registry = registry;
+    this.executor = newRequestExecutor();
+    this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+    server.setExecutor(executor);
+    server.createContext("/athletes", exchange -> handle(exchange, this::athletes));
+    server.createContext("/invoices/", exchange -> handle(exchange, this::invoice));
+    server.createContext("/stats", exchange -> handle(exchange, this::stats));
+    server.createContext("/weights/", exchange -> handle(exchange, this::weights));
+  }
+
+  /**
+   * Starts accepting requests.
+   */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Returns the port the server listens on.
+   *
+   * @return The bound port.
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Stops accepting requests and waits briefly for those in flight.
+   */
+  public void stop() {
+    server.stop(1);
+    executor.shutdown();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Creates the executor running requests: one virtual thread per request
+   * on JDKs that have them, a pool sized to the cores otherwise.
+   */
+  static ExecutorService newRequestExecutor() {
+    try {
+      return (ExecutorService) Executors.class
+        .getMethod("newVirtualThreadPerTaskExecutor")
+        .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors() * 4
+      );
+    }
+  }
+
+  /**
+   * Runs a handler, answering 500 if it fails before responding.
+   */
+  private static void handle(HttpExchange exchange, Handler handler) {
+    try {
+      handler.handle(exchange);
+    } catch (IOException | RuntimeException e) {
+      try {
+        send(exchange, 500, error(e.getMessage()));
+      } catch (IOException | RuntimeException ignored) {
+        // The response was already under way
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void athletes(HttpExchange exchange) throws IOException {
+    switch (exchange.getRequestMethod()) {
+      case "POST" -> register(exchange);
+      case "GET" -> query(exchange);
+      default -> send(exchange, 405, error("Method not allowed"));
+    }
+  }
+
+  private void register(HttpExchange exchange) throws IOException {
+    String body = new String(
+      exchange.getRequestBody().readAllBytes(),
+      StandardCharsets.UTF_8
+    );
+    Object parsed = BulkImporter.parseRow(body.replace('\n', ' '), true);
+    if (!(parsed instanceof Athlete athlete)) {
+      send(exchange, 400, error(parsed == null ? "Empty body" : (String) parsed));
+      return;
+    }
+    int id;
+    try {
+      id = registry.register(athlete);
+    } catch (IllegalArgumentException e) {
+      send(exchange, 400, error(e.getMessage()));
+      return;
+    }
+    StringBuilder json = new StringBuilder(256).append('{');
+    appendAthleteFields(json, id, athlete);
+    WeightCategory suggested = WeightClassifier.classify(
+      athlete.getCurrentWeight()
+    );
+    json.append(",\"fitsCategory\":").append(suggested == athlete.getWeightCategory());
+    if (suggested != null) {
+      json.append(",\"suggestedCategory\":");
+      appendString(json, suggested.getName());
+    }
+    json.append(",\"invoice\":");
+    appendInvoice(json, CostCalculator.calculate(athlete));
+    json.append('}');
+    send(exchange, 201, json);
+  }
+
+  private void query(HttpExchange exchange) throws IOException {
+    Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+    StringBuilder json = new StringBuilder(4096);
+    try {
+      if (
+        params.containsKey("name") ||
+        params.containsKey("prefix") ||
+        params.containsKey("similar")
+      ) {
+        int limit = parseLimit(params);
+        int[] ids = params.containsKey("name")
+          ? registry.findIdsByName(params.get("name"))
+          : params.containsKey("prefix")
+            ? registry.findIdsByNamePrefix(params.get("prefix"), limit)
+            : registry.findIdsBySimilarName(params.get("similar"), limit);
+        json.append("{\"athletes\":[");
+        for (int i = 0; i < ids.length && i < limit; i++) {
+          appendAthlete(json, ids[i], registry.get(ids[i])).append(',');
+        }
+        closeArray(json).append('}');
+      } else if (FILTERS.stream().anyMatch(params::containsKey)) {
+        int cursor = Integer.parseInt(params.getOrDefault("cursor", "0"));
+        int limit = parseLimit(params);
+        int[] ids = registry.findIds(parseFilters(params), cursor, limit);
+        json.append("{\"athletes\":[");
+        for (int id : ids) {
+          appendAthlete(json, id, registry.get(id)).append(',');
+        }
+        closeArray(json);
+        int next = ids.length == limit && limit > 0
+          ? ids[ids.length - 1] + 1
+          : -1;
+        json.append(",\"nextCursor\":").append(next).append('}');
+      } else {
+        int cursor = Integer.parseInt(params.getOrDefault("cursor", "0"));
+        AthleteRegistry.Page page = registry.page(cursor, parseLimit(params));
+        json.append("{\"athletes\":[");
+        List<Athlete> athletes = page.athletes();
+        for (int i = 0; i < athletes.size(); i++) {
+          appendAthlete(json, cursor + i, athletes.get(i)).append(',');
+        }
+        closeArray(json);
+        json.append(",\"nextCursor\":").append(page.nextCursor()).append('}');
+      }
+    } catch (NumberFormatException e) {
+      send(exchange, 400, error("Invalid number: " + e.getMessage()));
+      return;
+    } catch (IllegalArgumentException e) {
+      send(exchange, 400, error(e.getMessage()));
+      return;
+    }
+    send(exchange, 200, json);
+  }
+
+  private void invoice(HttpExchange exchange) throws IOException {
+    if (!exchange.getRequestMethod().equals("GET")) {
+      send(exchange, 405, error("Method not allowed"));
+      return;
+    }
+    String path = exchange.getRequestURI().getPath();
+    int id;
+    try {
+      id = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+    } catch (NumberFormatException e) {
+      send(exchange, 400, error("Invalid athlete id"));
+      return;
+    }
+    if (id < 0 || id >= registry.size()) {
+      send(exchange, 404, error("No athlete with id " + id));
+      return;
+    }
+    Athlete athlete = registry.get(id);
+    StringBuilder json = new StringBuilder(256);
+    json.append("{\"id\":").append(id).append(",\"name\":");
+    appendString(json, athlete.getName()).append(',');
+    json.append("\"invoice\":");
+    appendInvoice(json, CostCalculator.calculate(athlete)).append('}');
+    send(exchange, 200, json);
+  }
+
+  private void stats(HttpExchange exchange) throws IOException {
+    if (!exchange.getRequestMethod().equals("GET")) {
+      send(exchange, 405, error("Method not allowed"));
+      return;
+    }
+    RosterAggregates aggregates = registry.getAggregates();
+    StringBuilder json = new StringBuilder(1024);
+    json.append("{\"athletes\":").append(aggregates.total());
+    json.append(",\"plans\":{");
+    for (TrainingPlan plan : TrainingPlan.values()) {
+      appendString(json, plan.getName()).append(":{");
+      for (WeightCategory category : WeightCategory.values()) {
+        appendString(json, category.getName()).append(':');
+        json.append(aggregates.count(plan, category)).append(',');
+      }
+      json.setCharAt(json.length() - 1, '}');
+      json.append(',');
+    }
+    json.setCharAt(json.length() - 1, '}');
+    json.append(",\"coachingHours\":").append(aggregates.totalCoachingHours());
+    json.append(",\"competitionEntries\":");
+    json.append(aggregates.totalCompetitionEntries());
+    json.append(",\"projectedMonthlyRevenue\":");
+    FeeSchedule.appendCents(json, aggregates.projectedMonthlyCents()).append('}');
+    send(exchange, 200, json);
+  }
+
+  private void weights(HttpExchange exchange) throws IOException {
+    switch (exchange.getRequestMethod()) {
+      case "POST" -> weighIn(exchange);
+      case "GET" -> weighIns(exchange);
+      default -> send(exchange, 405, error("Method not allowed"));
+    }
+  }
+
+  private void weighIn(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    String body = new String(
+      exchange.getRequestBody().readAllBytes(),
+      StandardCharsets.UTF_8
+    );
+    int id;
+    int weight;
+    WeightCategory category;
+    try {
+      id = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+      String[] values = BulkImporter.parseJsonObject(body, WEIGH_IN_FIELDS); // Bad escapes throw
+      if (values == null || values[0] == null) {
+        send(exchange, 400, error("Expected a weight"));
+        return;
+      }
+      weight = Integer.parseInt(values[0].trim());
+      category =
+        values[1] != null
+          ? WeightCategory.getWeightCategoryByName(values[1].trim())
+          : WeightClassifier.classify(weight);
+    } catch (IllegalArgumentException e) {
+      send(exchange, 400, error("Invalid request: " + e.getMessage()));
+      return;
+    }
+    if (id < 0 || id >= registry.size()) {
+      send(exchange, 404, error("No athlete with id " + id));
+      return;
+    }
+    if (category == null) {
+      category = registry.getRoster().getWeightCategory(id); // No category covers the weight
+    }
+    try {
+      registry.changeWeight(id, weight, category);
+    } catch (IllegalArgumentException e) {
+      send(exchange, 400, error(e.getMessage()));
+      return;
+    }
+    send(exchange, 200, appendAthlete(new StringBuilder(256), id, registry.get(id)));
+  }
+
+  private void weighIns(HttpExchange exchange) throws IOException {
+    Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+    String path = exchange.getRequestURI().getPath();
+    int id;
+    LocalDate from;
+    LocalDate to;
+    int weeks;
+    try {
+      id = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+      to =
+        params.containsKey("to") ? LocalDate.parse(params.get("to")) : LocalDate.now();
+      from =
+        params.containsKey("from")
+          ? LocalDate.parse(params.get("from"))
+          : to.minusYears(1);
+      weeks = parseBound(params, "weeks", DEFAULT_TREND_WEEKS);
+    } catch (NumberFormatException | DateTimeParseException e) {
+      send(exchange, 400, error("Invalid request: " + e.getMessage()));
+      return;
+    }
+    if (id < 0 || id >= registry.size()) {
+      send(exchange, 404, error("No athlete with id " + id));
+      return;
+    }
+    WeightHistory history = registry.getWeightHistory();
+    StringBuilder json = new StringBuilder(1024);
+    json.append("{\"id\":").append(id).append(",\"weighIns\":[");
+    for (WeightHistory.WeighIn weighIn : history.range(id, from, to)) {
+      json.append("{\"date\":\"").append(weighIn.date()).append("\",\"weight\":");
+      json.append(weighIn.weight()).append("},");
+    }
+    closeArray(json);
+    double trend = history.trend(id, weeks, to);
+    json.append(",\"trendKgPerWeek\":");
+    json.append(Double.isNaN(trend) ? "null" : String.format(Locale.ROOT, "%.2f", trend));
+    json.append('}');
+    send(exchange, 200, json);
+  }
+
+  private static AthleteQuery parseFilters(Map<String, String> params) {
+    AthleteQuery query = new AthleteQuery();
+    if (params.containsKey("plan")) {
+      query.plans(
+        Arrays
+          .stream(params.get("plan").split(","))
+          .map(TrainingPlan::getTrainingPlanByName)
+          .toArray(TrainingPlan[]::new)
+      );
+    }
+    if (params.containsKey("category")) {
+      query.categories(
+        Arrays
+          .stream(params.get("category").split(","))
+          .map(WeightCategory::getWeightCategoryByName)
+          .toArray(WeightCategory[]::new)
+      );
+    }
+    if (params.containsKey("minWeight") || params.containsKey("maxWeight")) {
+      query.weightBetween(
+        parseBound(params, "minWeight", Integer.MIN_VALUE),
+        parseBound(params, "maxWeight", Integer.MAX_VALUE)
+      );
+    }
+    if (
+      params.containsKey("minCoachingHours") ||
+      params.containsKey("maxCoachingHours")
+    ) {
+      query.coachingHoursBetween(
+        parseBound(params, "minCoachingHours", Integer.MIN_VALUE),
+        parseBound(params, "maxCoachingHours", Integer.MAX_VALUE)
+      );
+    }
+    if (
+      params.containsKey("minCompetitions") ||
+      params.containsKey("maxCompetitions")
+    ) {
+      query.competitionsBetween(
+        parseBound(params, "minCompetitions", Integer.MIN_VALUE),
+        parseBound(params, "maxCompetitions", Integer.MAX_VALUE)
+      );
+    }
+    if (params.containsKey("nearUpperLimit")) {
+      query.nearUpperLimit(parseBound(params, "nearUpperLimit", 0));
+    }
+    return query;
+  }
+
+  private static int parseBound(
+    Map<String, String> params,
+    String key,
+    int missing
+  ) {
+    String value = params.get(key);
+    return value == null ? missing : Integer.parseInt(value);
+  }
+
+  private static int parseLimit(Map<String, String> params) {
+    int limit = Integer.parseInt(
+      params.getOrDefault("limit", String.valueOf(DEFAULT_LIMIT))
+    );
+    return Math.max(0, Math.min(limit, MAX_LIMIT));
+  }
+
+  private static Map<String, String> parseQuery(String query) {
+    Map<String, String> params = new HashMap<>();
+    if (query == null) {
+      return params;
+    }
+    for (String pair : query.split("&")) {
+      int equals = pair.indexOf('=');
+      if (equals > 0) {
+        params.put(
+          URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+          URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8)
+        );
+      }
+    }
+    return params;
+  }
+
+  private static StringBuilder appendAthlete(
+    StringBuilder json,
+    int id,
+    Athlete athlete
+  ) {
+    return appendAthleteFields(json.append('{'), id, athlete).append('}');
+  }
+
+  private static StringBuilder appendAthleteFields(
+    StringBuilder json,
+    int id,
+    Athlete athlete
+  ) {
+    json.append("\"id\":").append(id).append(",\"name\":");
+    appendString(json, athlete.getName());
+    json.append(",\"plan\":");
+    appendString(json, athlete.getTrainingPlan().getName());
+    json.append(",\"category\":");
+    appendString(json, athlete.getWeightCategory().getName());
+    json.append(",\"weight\":").append(athlete.getCurrentWeight());
+    json.append(",\"coachingHours\":").append(athlete.getPrivateCoachingHours());
+    return json.append(",\"competitions\":").append(athlete.getCompetitionsEntered());
+  }
+
+  private static StringBuilder appendInvoice(
+    StringBuilder json,
+    CostCalculator.CostBreakdown cost
+  ) {
+    json.append("{\"trainingPlan\":");
+    FeeSchedule.appendCents(json, cost.trainingPlanCents());
+    json.append(",\"competitions\":");
+    FeeSchedule.appendCents(json, cost.competitionsCents());
+    json.append(",\"coaching\":");
+    FeeSchedule.appendCents(json, cost.coachingCents());
+    json.append(",\"total\":");
+    FeeSchedule.appendCents(json, cost.totalCents());
+    return json.append('}');
+  }
+
+  static StringBuilder appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    return json.append('"');
+  }
+
+  private static StringBuilder closeArray(StringBuilder json) {
+    if (json.charAt(json.length() - 1) == ',') {
+      json.setLength(json.length() - 1);
+    }
+    return json.append(']');
+  }
+
+  private static StringBuilder error(String message) {
+    StringBuilder json = new StringBuilder("{\"error\":");
+    return appendString(json, String.valueOf(message)).append('}');
+  }
+
+  private static void send(HttpExchange exchange, int status, CharSequence json)
+    throws IOException {
+    byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  /**
+   * Handles one exchange; the caller closes it.
+   */
+  private interface Handler {
+    void handle(HttpExchange exchange) throws IOException;
+  }
+}
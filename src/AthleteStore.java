@@ -0,0 +1,528 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log holding the registered athletes.
+ *
+ * The file starts with a fixed header followed by one record per athlete:
+ * [int payload length][payload][int CRC32 of payload]. Registering an athlete
+ * appends exactly one record, so its cost does not depend on the roster size.
+ *
+ * The store may be shared between threads. Records are encoded by the
+ * calling thread and only the write itself is serialized, which also hands
+ * out ids in file order; reads use positional channel reads and take no lock.
+ *
+ * The {@link AthleteRegistry} uses the file as the snapshot of its
+ * {@link WriteAheadLog}: it is rewritten whole by {@link #writeSnapshot}
+ * and its header records the last log entry it already reflects.
+ */
+class AthleteStore implements Closeable {
+
+  static final int MAGIC = 0x4E534A44; // "NSJD"
+  static final short FORMAT_VERSION = 2; // 1: fixed-layout payloads, 2: AthleteCodec payloads
+  static final int HEADER_SIZE = 16; // magic, version, flags, checkpoint LSN
+  static final int RECORD_OVERHEAD = 8; // length prefix and checksum
+  static final int MAX_PAYLOAD = 1 << 16;
+
+  private static final int READ_BUFFER_SIZE = 1 << 17;
+  private static final int ESTIMATED_RECORD_SIZE = 40; // Typical record with a short name
+  private static final int SNAPSHOT_BUFFER_SIZE = 1 << 20;
+  private static final TrainingPlan[] PLANS = TrainingPlan.values();
+  private static final WeightCategory[] CATEGORIES = WeightCategory.values();
+
+  private final Path path;
+  private final FileChannel channel;
+  private final Object appendLock = new Object(); // Serializes writes to the end of the file
+  private volatile long endOffset; // Offset at which the next record is appended
+  private volatile int recordCount; // Number of valid records in the file
+  private long checkpointLsn; // Last write-ahead log entry folded into the file
+  private short version = FORMAT_VERSION; // Format the records in the file are written in
+
+  private AthleteStore(Path path, FileChannel channel) {
+    this.path = path;
+    this.channel = channel;
+  }
+
+  /**
+   * Opens the store at the given path, creating it if it does not exist.
+   * A record left half-written by a crash is cut off so that appends
+   * continue from the last complete record, and a file written in an older
+   * format is converted to the current one.
+   *
+   * @param path The path of the data file.
+   * @return The opened store.
+   * @throws IOException if the file cannot be opened or is not an athlete store.
+   */
+  public static AthleteStore open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(
+      path,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.READ,
+      StandardOpenOption.WRITE
+    );
+    AthleteStore store = new AthleteStore(path, channel);
+    try {
+      store.recover();
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    if (store.version < FORMAT_VERSION) { // Rewrite an older file in the current format once
+      List<Athlete> athletes = store.readAll();
+      store.close();
+      writeSnapshot(path, store.checkpointLsn, athletes.size(), athletes::get);
+      return open(path);
+    }
+    return store;
+  }
+
+  /**
+   * Reads the checkpoint LSN from the header of a store file in the current
+   * format, without checking its records.
+   *
+   * @param path The path of the data file.
+   * @return The checkpoint LSN, or -1 if there is no such file.
+   * @throws IOException if the file cannot be read.
+   */
+  static long readCheckpointLsn(Path path) throws IOException {
+    if (!Files.isRegularFile(path) || Files.size(path) < HEADER_SIZE) {
+      return -1;
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    try (
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)
+    ) {
+      while (header.hasRemaining()) {
+        if (channel.read(header, header.position()) < 0) {
+          return -1;
+        }
+      }
+    }
+    header.flip();
+    if (header.getInt() != MAGIC || header.getShort() != FORMAT_VERSION) {
+      return -1;
+    }
+    return header.getLong(HEADER_SIZE - Long.BYTES);
+  }
+
+  /**
+   * Returns the path of the data file.
+   *
+   * @return The path of the data file.
+   */
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the sequence number of the last write-ahead log entry that the
+   * file already reflects, 0 for a store written without a log.
+   *
+   * @return The checkpoint LSN from the header.
+   */
+  public long getCheckpointLsn() {
+    return checkpointLsn;
+  }
+
+  /**
+   * Returns the number of athletes in the store.
+   *
+   * @return The number of athletes in the store.
+   */
+  public int size() {
+    return recordCount;
+  }
+
+  /**
+   * Appends one athlete record to the end of the log.
+   *
+   * @param athlete The athlete to append.
+   * @return The id of the new record, i.e. its position in the store.
+   * @throws IOException if the record cannot be written.
+   */
+  public int append(Athlete athlete) throws IOException {
+    ByteBuffer record = writeRecord(
+      athlete,
+      ByteBuffer.allocate(maxRecordSize(athlete))
+    );
+    record.flip();
+    return write(record, 1);
+  }
+
+  /**
+   * Appends a batch of athlete records with a single write.
+   *
+   * @param athletes The athletes to append, in order.
+   * @return The id of the first record of the batch.
+   * @throws IOException if the records cannot be written.
+   */
+  public int appendAll(List<Athlete> athletes) throws IOException {
+    ByteBuffer batch = ByteBuffer.allocate(
+      athletes.size() * ESTIMATED_RECORD_SIZE
+    );
+    for (Athlete athlete : athletes) {
+      batch = writeRecord(athlete, batch);
+    }
+    batch.flip();
+    return write(batch, athletes.size());
+  }
+
+  /**
+   * Visits every athlete in the store in the order they were appended.
+   *
+   * @param action The action to perform for each athlete.
+   * @throws IOException if the file cannot be read.
+   */
+  public void forEach(Consumer<Athlete> action) throws IOException {
+    boolean fixed = version == 1;
+    scan(
+      channel,
+      endOffset,
+      (offset, payload) ->
+        action.accept(fixed ? decodeFixed(payload) : decode(payload))
+    );
+  }
+
+  /**
+   * Reads every athlete in the store into a list.
+   *
+   * @return The list of athletes in the store.
+   * @throws IOException if the file cannot be read.
+   */
+  public List<Athlete> readAll() throws IOException {
+    List<Athlete> athletes = new ArrayList<>(recordCount);
+    forEach(athletes::add);
+    return athletes;
+  }
+
+  /**
+   * Writes a complete store file holding the given athletes and replaces the
+   * file at the path with it in one atomic rename, so a crash leaves either
+   * the old file or the new one.
+   *
+   * @param path          The path of the data file.
+   * @param checkpointLsn The last log entry reflected by the athletes.
+   * @param count         The number of athletes.
+   * @param athletes      The athlete with each id below the count.
+   * @throws IOException if the file cannot be written.
+   */
+  static void writeSnapshot(
+    Path path,
+    long checkpointLsn,
+    int count,
+    IntFunction<Athlete> athletes
+  ) throws IOException {
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (
+      FileChannel out = FileChannel.open(
+        temp,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE
+      )
+    ) {
+      ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_BUFFER_SIZE);
+      buffer.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) 0);
+      buffer.putLong(checkpointLsn);
+      long position = 0;
+      for (int id = 0; id < count; id++) {
+        Athlete athlete = athletes.apply(id);
+        if (buffer.remaining() < maxRecordSize(athlete)) {
+          buffer.flip();
+          writeFully(out, buffer, position);
+          position += buffer.limit();
+          buffer.clear();
+        }
+        buffer = writeRecord(athlete, buffer);
+      }
+      buffer.flip();
+      writeFully(out, buffer, position);
+      force(out, true);
+    }
+    Files.move(
+      temp,
+      path,
+      StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE
+    );
+  }
+
+  /**
+   * Forces appended records to the storage device.
+   *
+   * @throws IOException if the file cannot be synced.
+   */
+  public void sync() throws IOException {
+    force(channel, false);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      sync();
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Validates the header and finds the end of the last complete record.
+   */
+  private void recover() throws IOException {
+    if (channel.size() == 0) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) 0);
+      header.putLong(0L).flip();
+      writeFully(channel, header, 0);
+      endOffset = HEADER_SIZE;
+      return;
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        throw new IOException(path + " is not an athlete store");
+      }
+    }
+    header.flip();
+    if (header.getInt() != MAGIC) {
+      throw new IOException(path + " is not an athlete store");
+    }
+    version = header.getShort();
+    if (version < 1 || version > FORMAT_VERSION) {
+      throw new IOException("Unsupported athlete store version " + version);
+    }
+    checkpointLsn = header.getLong(HEADER_SIZE - Long.BYTES);
+    endOffset = scan(channel, channel.size(), (offset, payload) -> recordCount++);
+    if (endOffset < channel.size()) {
+      channel.truncate(endOffset); // Drop a torn record left by a crash
+    }
+  }
+
+  /**
+   * Walks the records between the header and the given limit, stopping at
+   * the first record that is incomplete or fails its checksum. Also used for
+   * the {@link WriteAheadLog}, whose files share the record framing.
+   *
+   * @return The offset just past the last valid record.
+   */
+  static long scan(FileChannel channel, long limit, RecordVisitor visitor)
+    throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    buffer.flip();
+    long position = HEADER_SIZE; // File offset of buffer.position()
+    long readOffset = HEADER_SIZE; // File offset of the next channel read
+    CRC32 checksum = new CRC32();
+    while (true) {
+      if (buffer.remaining() < Integer.BYTES) {
+        if (readOffset >= limit) {
+          return position;
+        }
+        int read = fill(channel, buffer, readOffset, limit);
+        if (read == 0) {
+          return position;
+        }
+        readOffset += read;
+        continue;
+      }
+      int length = buffer.getInt(buffer.position());
+      if (length <= 0 || length > MAX_PAYLOAD) {
+        return position;
+      }
+      int recordSize = length + RECORD_OVERHEAD;
+      if (buffer.remaining() < recordSize) {
+        if (readOffset >= limit) {
+          return position;
+        }
+        int read = fill(channel, buffer, readOffset, limit);
+        if (read == 0) {
+          return position;
+        }
+        readOffset += read;
+        continue;
+      }
+      ByteBuffer payload = buffer.slice(buffer.position() + Integer.BYTES, length);
+      checksum.reset();
+      checksum.update(payload.duplicate());
+      int stored = buffer.getInt(buffer.position() + Integer.BYTES + length);
+      if ((int) checksum.getValue() != stored) {
+        return position;
+      }
+      visitor.visit(position, payload);
+      buffer.position(buffer.position() + recordSize);
+      position += recordSize;
+    }
+  }
+
+  /**
+   * Compacts the unread bytes of the buffer and reads more from the channel.
+   *
+   * @return The number of bytes read.
+   */
+  private static int fill(
+    FileChannel channel,
+    ByteBuffer buffer,
+    long offset,
+    long limit
+  ) throws IOException {
+    buffer.compact();
+    int max = (int) Math.min(buffer.remaining(), limit - offset);
+    ByteBuffer target = buffer.slice(buffer.position(), max);
+    int read = 0;
+    while (target.hasRemaining()) {
+      int n = channel.read(target, offset + read);
+      if (n < 0) {
+        break;
+      }
+      read += n;
+    }
+    Metrics.BYTES_READ.add(read);
+    buffer.position(buffer.position() + read);
+    buffer.flip();
+    return read;
+  }
+
+  static void writeFully(FileChannel channel, ByteBuffer buffer, long offset)
+    throws IOException {
+    long position = offset;
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+    Metrics.BYTES_WRITTEN.add(position - offset);
+  }
+
+  /**
+   * Forces the writes to a file to the storage device, counting the sync
+   * and its latency in the {@link Metrics}.
+   *
+   * @param channel  The file.
+   * @param metaData Whether the file's metadata must be written as well.
+   * @throws IOException if the file cannot be synced.
+   */
+  static void force(FileChannel channel, boolean metaData) throws IOException {
+    long start = System.nanoTime();
+    channel.force(metaData);
+    Metrics.SYNC.recordSince(start);
+  }
+
+  /**
+   * Writes encoded records at the end of the file, one writer at a time.
+   *
+   * @return The id of the first record written.
+   */
+  private int write(ByteBuffer records, int count) throws IOException {
+    synchronized (appendLock) {
+      int firstId = recordCount;
+      writeFully(channel, records, endOffset);
+      endOffset += records.limit();
+      recordCount = firstId + count;
+      return firstId;
+    }
+  }
+
+  /**
+   * Writes a framed record (length, payload, checksum) into the buffer,
+   * growing it first if the record might not fit.
+   *
+   * @return The buffer holding the record, which may be a new one.
+   */
+  private static ByteBuffer writeRecord(Athlete athlete, ByteBuffer out) {
+    int needed = maxRecordSize(athlete);
+    if (out.remaining() < needed) {
+      out.flip();
+      out = ByteBuffer.allocate(out.capacity() * 2 + needed).put(out);
+    }
+    int start = out.position();
+    out.putInt(0); // Length placeholder
+    encode(athlete, out);
+    closeRecord(out, start);
+    return out;
+  }
+
+  /**
+   * Fills in the length prefix of a record whose payload has just been
+   * written, and appends its checksum.
+   *
+   * @param out   The buffer holding the record.
+   * @param start The position of the record's length placeholder.
+   */
+  static void closeRecord(ByteBuffer out, int start) {
+    int length = out.position() - start - Integer.BYTES;
+    out.putInt(start, length);
+    CRC32 crc = new CRC32();
+    crc.update(out.slice(start + Integer.BYTES, length));
+    out.putInt((int) crc.getValue());
+  }
+
+  /**
+   * Returns an upper bound on the framed size of an athlete's record.
+   */
+  static int maxRecordSize(Athlete athlete) {
+    return RECORD_OVERHEAD + AthleteCodec.maxEncodedSize(athlete);
+  }
+
+  /**
+   * Encodes an athlete as a record payload.
+   *
+   * @param athlete The athlete to encode.
+   * @param out     The buffer to write the payload into.
+   */
+  static void encode(Athlete athlete, ByteBuffer out) {
+    AthleteCodec.encode(athlete, out);
+  }
+
+  /**
+   * Decodes an athlete from a payload written by {@link #encode}.
+   *
+   * @param payload The payload to decode.
+   * @return The decoded athlete.
+   */
+  static Athlete decode(ByteBuffer payload) {
+    return AthleteCodec.decode(payload);
+  }
+
+  /**
+   * Decodes an athlete from a payload in the fixed layout of format 1:
+   * plan and category ordinals as bytes, weight as an int, coaching hours and
+   * competitions as bytes, then the name as a short length and UTF-8 bytes.
+   *
+   * @param payload The payload to decode.
+   * @return The decoded athlete.
+   */
+  static Athlete decodeFixed(ByteBuffer payload) {
+    ByteBuffer in = payload.duplicate();
+    TrainingPlan plan = PLANS[in.get()];
+    WeightCategory category = CATEGORIES[in.get()];
+    int weight = in.getInt();
+    int coachingHours = in.get();
+    int competitions = in.get();
+    byte[] name = new byte[in.getShort() & 0xFFFF];
+    in.get(name);
+    return new Athlete(
+      new String(name, StandardCharsets.UTF_8),
+      plan,
+      weight,
+      coachingHours,
+      competitions,
+      category
+    );
+  }
+
+  /**
+   * Callback invoked for each valid record found while scanning.
+   */
+  interface RecordVisitor {
+    void visit(long offset, ByteBuffer payload) throws IOException;
+  }
+}
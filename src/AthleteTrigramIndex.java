@@ -0,0 +1,407 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram index over athlete names for searches that tolerate typos, so
+ * that "Jon Smth" still finds John Smith.
+ *
+ * Names are compared in lower case with runs of whitespace collapsed, i.e.
+ * in the form of {@link Athlete#formatName} regardless of capitalisation.
+ * Each name, padded with two spaces in front and one behind, is cut into
+ * overlapping three-letter pieces, and the index keeps, for every piece, the
+ * ids of the athletes whose name contains it. A search counts the pieces
+ * each athlete shares with the query, and only athletes that share enough
+ * of them to be within reach, since one typo changes at most three pieces,
+ * have their edit distance to the query worked out. They are checked in
+ * order of pieces shared, so the search stops as soon as no athlete left
+ * can beat the ones found.
+ *
+ * Letters are coded in six bits, so every piece has its own id list and no
+ * hashing is needed; letters outside a-z share a few codes, which only adds
+ * candidates that the edit distance then rules out. The id lists hold the
+ * gaps between ascending ids as varints, mostly one byte per athlete and
+ * piece. Names never change once registered, so the index only grows: the
+ * registry builds it in the background when it opens, registrations add
+ * their athletes as they go, and each search first takes in any athletes
+ * still missing.
+ */
+class AthleteTrigramIndex {
+
+  private static final int CODE_BITS = 6;
+  private static final int TRIGRAMS = 1 << (3 * CODE_BITS);
+  private static final int MAX_QUERY_LENGTH = 64; // Longer queries are cut, so a column of the edit distance fits a long
+  private static final int MAX_INLINE_CATCH_UP = 1 << 16; // Most athletes a registration indexes itself
+  private static final int[] NO_IDS = new int[0];
+
+  private final ColumnarRoster roster;
+  private final byte[][] postings = new byte[TRIGRAMS][]; // Trigram -> gaps between ascending ids
+  private final int[] lengths = new int[TRIGRAMS]; // Bytes used in each list
+  private final int[] lastIds = new int[TRIGRAMS]; // Last id in each list
+  private final ReadWriteLock lock = new ReentrantReadWriteLock(); // Searches share it, catching up takes it alone
+  private volatile int indexed; // Ids below this are in the index
+  private char[] name = new char[64]; // Scratch for catching up, grown for longer names
+  private int[] pieces = new int[65];
+
+  /**
+   * Creates an index over the names in a roster. Nothing is indexed until
+   * the first catch-up.
+   *
+   * @param roster The roster holding the names.
+   */
+  AthleteTrigramIndex(ColumnarRoster roster) {
+    this.roster = roster;
+    Arrays.fill(lastIds, -1);
+  }
+
+  /**
+   * Finds the athletes whose names are closest to the given name, allowing
+   * one typo for every three letters of it.
+   *
+   * @param name  The name to look up, in any capitalisation.
+   * @param limit The maximum number of ids to return.
+   * @return The ids of the matching athletes, closest first, then in
+   *         registration order.
+   */
+  public int[] search(String name, int limit) {
+    char[] query = name.toCharArray();
+    int length = Math.min(normalize(query, query.length), MAX_QUERY_LENGTH);
+    if (length == 0 || limit <= 0) {
+      return NO_IDS;
+    }
+    int maxDistance = Math.max(1, length / 3);
+    int[] pieces = new int[length + 1];
+    int count = trigrams(query, length, pieces);
+    catchUp();
+    lock.readLock().lock();
+    try {
+      return rank(
+        new Pattern(query, length),
+        Arrays.copyOf(pieces, count),
+        maxDistance,
+        limit
+      );
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Counts the pieces each athlete shares with the query and checks the
+   * edit distance of the athletes that share enough, most shared first.
+   */
+  private int[] rank(Pattern query, int[] pieces, int maxDistance, int limit) {
+    int needed = Math.max(1, pieces.length - 3 * maxDistance); // Shared pieces within reach
+    byte[] shared = new byte[indexed];
+    int[] candidates = new int[64];
+    int found = 0;
+    for (int piece : pieces) {
+      byte[] gaps = postings[piece];
+      int end = lengths[piece];
+      int id = -1;
+      for (int at = 0; at < end;) {
+        int gap = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = gaps[at++];
+          gap |= (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        id += gap;
+        if (++shared[id] == needed) {
+          if (found == candidates.length) {
+            candidates = Arrays.copyOf(candidates, found * 2);
+          }
+          candidates[found++] = id;
+        }
+      }
+    }
+    // Sort the candidates by pieces shared, most first, keeping id order
+    int[] starts = new int[pieces.length + 2];
+    for (int i = 0; i < found; i++) {
+      starts[pieces.length - shared[candidates[i]] + 1]++;
+    }
+    for (int i = 1; i < starts.length; i++) {
+      starts[i] += starts[i - 1];
+    }
+    int[] ordered = new int[found];
+    for (int i = 0; i < found; i++) {
+      ordered[starts[pieces.length - shared[candidates[i]]]++] = candidates[i];
+    }
+    long[] best = new long[Math.min(limit, found)]; // Distance, then id, sorted
+    int kept = 0;
+    char[] name = new char[MAX_QUERY_LENGTH + maxDistance]; // Longer names are out of reach
+    for (int i = 0; i < found; i++) {
+      int id = ordered[i];
+      int missing = pieces.length - shared[id];
+      int bound = kept == best.length ? (int) (best[kept - 1] >>> 32) : maxDistance;
+      if ((missing + 2) / 3 > bound) {
+        break; // No one left can come closer than the athletes kept
+      }
+      int length = roster.copyName(id, name);
+      if (length < 0) {
+        continue;
+      }
+      int distance = query.distance(name, normalize(name, length), bound);
+      if (distance > bound) {
+        continue;
+      }
+      long entry = ((long) distance << 32) | id;
+      if (kept == best.length) {
+        if (entry > best[kept - 1]) {
+          continue;
+        }
+        kept--;
+      }
+      int at = kept++;
+      while (at > 0 && best[at - 1] > entry) {
+        best[at] = best[at - 1];
+        at--;
+      }
+      best[at] = entry;
+    }
+    int[] ids = new int[kept];
+    for (int i = 0; i < kept; i++) {
+      ids[i] = (int) best[i];
+    }
+    return ids;
+  }
+
+  /**
+   * Adds the athletes registered since the last catch-up, waiting for one
+   * under way to finish first.
+   */
+  void catchUp() {
+    if (roster.size() == indexed) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      addRegistered();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Adds the athletes registered since the last catch-up, unless the index
+   * is busy or too far behind, in which case whoever holds it or the next
+   * search takes them in. Cheap enough to call after every registration.
+   */
+  void tryCatchUp() {
+    int missing = roster.size() - indexed;
+    if (
+      missing == 0 ||
+      missing > MAX_INLINE_CATCH_UP ||
+      !lock.writeLock().tryLock()
+    ) {
+      return;
+    }
+    try {
+      addRegistered();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Indexes the athletes from the first one missing up to the size of the
+   * roster. Called under the write lock.
+   */
+  private void addRegistered() {
+    int size = roster.size();
+    for (int id = indexed; id < size; id++) {
+      int length = roster.copyName(id, name);
+      while (length < 0) {
+        name = new char[name.length * 2];
+        length = roster.copyName(id, name);
+      }
+      length = normalize(name, length);
+      if (pieces.length <= length) {
+        pieces = new int[name.length + 1];
+      }
+      int count = trigrams(name, length, pieces);
+      for (int i = 0; i < count; i++) {
+        append(pieces[i], id);
+      }
+    }
+    indexed = Math.max(indexed, size);
+  }
+
+  /**
+   * Adds an id, higher than any already there, to the list of a trigram.
+   */
+  private void append(int piece, int id) {
+    int gap = id - lastIds[piece];
+    lastIds[piece] = id;
+    byte[] gaps = postings[piece];
+    int at = lengths[piece];
+    if (gaps == null) {
+      gaps = postings[piece] = new byte[8];
+    } else if (gaps.length - at < 5) { // Room for the largest varint
+      gaps = postings[piece] = Arrays.copyOf(gaps, gaps.length + (gaps.length >> 1));
+    }
+    while (gap >= 0x80) {
+      gaps[at++] = (byte) (gap | 0x80);
+      gap >>>= 7;
+    }
+    gaps[at++] = (byte) gap;
+    lengths[piece] = at;
+  }
+
+  /**
+   * Lower-cases a name in place and collapses its whitespace.
+   *
+   * @return The new length of the name.
+   */
+  static int normalize(char[] name, int length) {
+    int n = 0;
+    boolean space = false;
+    for (int i = 0; i < length; i++) {
+      char c = name[i];
+      if (Character.isWhitespace(c)) {
+        space = n > 0;
+      } else {
+        if (space) {
+          name[n++] = ' ';
+          space = false;
+        }
+        name[n++] = Character.toLowerCase(c);
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Works out the distinct trigrams of a normalized name, padded with two
+   * spaces in front and one behind.
+   *
+   * @return The number of distinct trigrams, at the start of the array.
+   */
+  static int trigrams(char[] name, int length, int[] pieces) {
+    int previous = 0; // The codes of the last two letters, spaces to start with
+    for (int i = 0; i <= length; i++) {
+      int code = i < length ? code(name[i]) : 0;
+      pieces[i] = (previous << CODE_BITS) | code;
+      previous = pieces[i] & ((1 << (2 * CODE_BITS)) - 1);
+    }
+    Arrays.sort(pieces, 0, length + 1);
+    int distinct = 0;
+    for (int i = 0; i <= length; i++) {
+      if (i == 0 || pieces[i] != pieces[i - 1]) {
+        pieces[distinct++] = pieces[i];
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * Returns the six-bit code of a lower-case letter.
+   */
+  private static int code(char c) {
+    if (c >= 'a' && c <= 'z') {
+      return c - 'a' + 1;
+    }
+    if (c >= '0' && c <= '9') {
+      return c - '0' + 27;
+    }
+    return switch (c) {
+      case ' ' -> 0;
+      case '-' -> 37;
+      case '\'' -> 38;
+      case '.' -> 39;
+      default -> 40 + c % 24; // Other letters share the codes left
+    };
+  }
+
+  /**
+   * A normalized query prepared for working out its edit distance to names
+   * a column at a time, each column held in the bits of a long (Myers'
+   * bit-parallel algorithm).
+   */
+  static final class Pattern {
+
+    private final int length;
+    private final long[] ascii = new long[128]; // Letter -> positions in the query
+    private final char[] others; // Other letters of the query
+    private final long[] otherMasks;
+
+    /**
+     * Prepares a query.
+     *
+     * @param query  The normalized query.
+     * @param length Its length, at most 64.
+     */
+    Pattern(char[] query, int length) {
+      this.length = length;
+      char[] letters = new char[length];
+      long[] masks = new long[length];
+      int n = 0;
+      for (int i = 0; i < length; i++) {
+        char c = query[i];
+        if (c < 128) {
+          ascii[c] |= 1L << i;
+          continue;
+        }
+        int at = 0;
+        while (at < n && letters[at] != c) {
+          at++;
+        }
+        if (at == n) {
+          letters[n++] = c;
+        }
+        masks[at] |= 1L << i;
+      }
+      this.others = Arrays.copyOf(letters, n);
+      this.otherMasks = Arrays.copyOf(masks, n);
+    }
+
+    /**
+     * Returns the Levenshtein distance between the query and a normalized
+     * name, or any number above the bound once it is clear the distance
+     * exceeds it.
+     */
+    int distance(char[] name, int nameLength, int bound) {
+      if (Math.abs(length - nameLength) > bound) {
+        return bound + 1;
+      }
+      long top = 1L << (length - 1);
+      long plus = -1L; // Vertical differences of +1
+      long minus = 0; // Vertical differences of -1
+      int score = length;
+      for (int j = 0; j < nameLength; j++) {
+        long equal = mask(name[j]);
+        long xv = equal | minus;
+        long xh = (((equal & plus) + plus) ^ plus) | equal;
+        long horizontalPlus = minus | ~(xh | plus);
+        long horizontalMinus = plus & xh;
+        if ((horizontalPlus & top) != 0) {
+          score++;
+        } else if ((horizontalMinus & top) != 0) {
+          score--;
+        }
+        horizontalPlus = (horizontalPlus << 1) | 1; // The empty query is j letters away
+        horizontalMinus <<= 1;
+        plus = horizontalMinus | ~(xv | horizontalPlus);
+        minus = horizontalPlus & xv;
+        if (score - (nameLength - j - 1) > bound) {
+          return bound + 1; // Even matching every letter left would not do
+        }
+      }
+      return score;
+    }
+
+    private long mask(char c) {
+      if (c < 128) {
+        return ascii[c];
+      }
+      for (int i = 0; i < others.length; i++) {
+        if (others[i] == c) {
+          return otherMasks[i];
+        }
+      }
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.stream.IntStream;
+
+/**
+ * Month-end billing for the whole roster.
+ *
+ * The columnar roster is cut into blocks of athletes; blocks are priced in
+ * parallel on the common fork/join pool, each into its own buffer, and the
+ * buffers are written to the invoice file in id order. No athlete record is
+ * decoded from the store. The fee table is read once at the start, so a fee
+ * change picked up mid-run cannot bill some blocks at the old rates and
+ * others at the new.
+ */
+abstract class BillingRun {
+
+  private static final int BLOCK_SIZE = 8192; // Athletes priced per task
+  static final String HEADER =
+    "id,name,plan,trainingPlanCost,competitionsCost,coachingCost,total";
+
+  /**
+   * Computes the invoices of every registered athlete and writes them to a file.
+   *
+   * @param registry The registry holding the athletes.
+   * @param month    The month being billed.
+   * @param file     The invoice file to write.
+   * @return The number of invoices and their grand total.
+   * @throws IOException if the file cannot be written.
+   */
+  public static Summary run(AthleteRegistry registry, YearMonth month, Path file)
+    throws IOException {
+    ColumnarRoster roster = registry.getRoster();
+    int count = roster.size();
+    int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    long[] blockTotals = new long[blocks];
+    FeeSchedule fees = FeeSchedule.current(); // One fee table for the whole run
+    try (Writer writer = Files.newBufferedWriter(file)) {
+      writer.write("# Invoices for " + month + "\n");
+      writer.write(HEADER + "\n");
+      IntStream
+        .range(0, blocks)
+        .parallel()
+        .mapToObj(block -> priceBlock(roster, fees, block, count, blockTotals))
+        .forEachOrdered(text -> {
+          try {
+            writer.append(text);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    long total = 0;
+    for (long blockTotal : blockTotals) {
+      total += blockTotal;
+    }
+    return new Summary(count, total);
+  }
+
+  /**
+   * Prices one block of athletes into invoice lines.
+   */
+  private static StringBuilder priceBlock(
+    ColumnarRoster roster,
+    FeeSchedule fees,
+    int block,
+    int count,
+    long[] blockTotals
+  ) {
+    int start = block * BLOCK_SIZE;
+    int end = Math.min(start + BLOCK_SIZE, count);
+    StringBuilder out = new StringBuilder((end - start) * 64);
+    long total = 0;
+    for (int id = start; id < end; id++) {
+      TrainingPlan plan = roster.getTrainingPlan(id);
+      long planCents = fees.trainingPlanCents(plan);
+      long competitionsCents = fees.competitionsCents(
+        roster.getCompetitionsEntered(id)
+      );
+      long coachingCents = fees.coachingCents(roster.getPrivateCoachingHours(id));
+      long totalCents = planCents + competitionsCents + coachingCents;
+      out.append(id).append(',').append(roster.getName(id)).append(',');
+      out.append(plan.getName()).append(',');
+      FeeSchedule.appendCents(out, planCents).append(',');
+      FeeSchedule.appendCents(out, competitionsCents).append(',');
+      FeeSchedule.appendCents(out, coachingCents).append(',');
+      FeeSchedule.appendCents(out, totalCents).append('\n');
+      total += totalCents;
+    }
+    blockTotals[block] = total;
+    return out;
+  }
+
+  /**
+   * Outcome of a billing run.
+   *
+   * @param invoices   The number of invoices written.
+   * @param totalCents The sum of all invoices in cents.
+   */
+  record Summary(int invoices, long totalCents) {}
+}
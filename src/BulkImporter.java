@@ -0,0 +1,271 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Non-interactive bulk registration of athletes from CSV or JSON-lines files.
+ *
+ * Rows are read in chunks; each chunk is parsed and validated in parallel
+ * with the same rules as {@link Athlete#register(InputSource)}, and the
+ * valid rows of a chunk are committed to the registry with a single batched
+ * append.
+ *
+ * CSV rows hold name,plan,category,weight,coachingHours,competitions, with an
+ * optional header line. JSON-lines rows hold one flat object per line with
+ * the same keys.
+ */
+abstract class BulkImporter {
+
+  private static final int CHUNK_SIZE = 16_384; // Rows parsed and committed together
+  private static final String[] FIELDS = {
+    "name",
+    "plan",
+    "category",
+    "weight",
+    "coachingHours",
+    "competitions",
+  };
+
+  /**
+   * Imports every row of the given file into the registry.
+   *
+   * @param registry The registry to add the athletes to.
+   * @param file     The CSV or JSON-lines file to import.
+   * @return The number of athletes imported and the rows that were rejected.
+   * @throws IOException if the file cannot be read or the athletes cannot be stored.
+   */
+  public static ImportResult importFile(AthleteRegistry registry, Path file)
+    throws IOException {
+    boolean json = file.getFileName().toString().endsWith(".jsonl");
+    int imported = 0;
+    List<RowError> errors = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(file)) {
+      List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+      int firstLine = 1; // Line number of the first row in the chunk
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (lineNumber == 1 && !json && line.startsWith(FIELDS[0] + ",")) {
+          firstLine = 2; // Skip the CSV header
+          continue;
+        }
+        chunk.add(line);
+        if (chunk.size() == CHUNK_SIZE) {
+          imported += commitChunk(registry, chunk, firstLine, json, errors);
+          firstLine = lineNumber + 1;
+          chunk.clear();
+        }
+      }
+      imported += commitChunk(registry, chunk, firstLine, json, errors);
+    }
+    return new ImportResult(imported, errors);
+  }
+
+  /**
+   * Writes the rejected rows to a report file, one line per row.
+   *
+   * @param result The result of an import.
+   * @param report The path of the report file.
+   * @throws IOException if the report cannot be written.
+   */
+  public static void writeErrorReport(ImportResult result, Path report)
+    throws IOException {
+    try (BufferedWriter writer = Files.newBufferedWriter(report)) {
+      for (RowError error : result.errors()) {
+        writer.write("line " + error.line() + ": " + error.message());
+        writer.newLine();
+      }
+    }
+  }
+
+  /**
+   * Parses one chunk in parallel and commits its valid rows as one batch.
+   *
+   * @return The number of athletes committed.
+   */
+  private static int commitChunk(
+    AthleteRegistry registry,
+    List<String> chunk,
+    int firstLine,
+    boolean json,
+    List<RowError> errors
+  ) throws IOException {
+    Object[] parsed = new Object[chunk.size()]; // Athlete or error message per row
+    IntStream
+      .range(0, chunk.size())
+      .parallel()
+      .forEach(i -> parsed[i] = parseRow(chunk.get(i), json));
+    List<Athlete> batch = new ArrayList<>(chunk.size());
+    for (int i = 0; i < parsed.length; i++) {
+      if (parsed[i] instanceof Athlete athlete) {
+        batch.add(athlete);
+      } else if (parsed[i] != null) {
+        errors.add(new RowError(firstLine + i, (String) parsed[i]));
+      }
+    }
+    if (!batch.isEmpty()) {
+      registry.registerAll(batch);
+    }
+    return batch.size();
+  }
+
+  /**
+   * Parses and validates one row.
+   *
+   * @return The athlete, an error message, or null for a blank row.
+   */
+  static Object parseRow(String row, boolean json) {
+    if (row.isBlank()) {
+      return null;
+    }
+    try {
+      String[] values = json
+        ? parseJsonObject(row, FIELDS)
+        : row.split(",", -1);
+      if (
+        values == null ||
+        values.length != FIELDS.length ||
+        Arrays.asList(values).contains(null)
+      ) {
+        return "Expected fields " + String.join(",", FIELDS);
+      }
+      String name = values[0].trim();
+      TrainingPlan plan = TrainingPlan.getTrainingPlanByName(values[1].trim());
+      WeightCategory category = WeightCategory.getWeightCategoryByName(
+        values[2].trim()
+      );
+      int weight = Integer.parseInt(values[3].trim());
+      int coachingHours = Integer.parseInt(values[4].trim());
+      int competitions = Integer.parseInt(values[5].trim());
+      String error = Athlete.validate(
+        name,
+        plan,
+        weight,
+        coachingHours,
+        competitions
+      );
+      if (error != null) {
+        return error;
+      }
+      return new Athlete(
+        Athlete.formatName(name),
+        plan,
+        weight,
+        coachingHours,
+        competitions,
+        category
+      );
+    } catch (NumberFormatException e) {
+      return "Invalid number: " + e.getMessage();
+    } catch (IllegalArgumentException e) {
+      return e.getMessage();
+    }
+  }
+
+  /**
+   * Parses a flat JSON object of string and number values into the values
+   * of the given keys, in order. Other keys are ignored.
+   *
+   * @return The values, null where a key is missing, or null if the line is
+   *         not such an object.
+   */
+  static String[] parseJsonObject(String line, String[] keys) {
+    String[] values = new String[keys.length];
+    int i = skipSpaces(line, 0);
+    if (i == line.length() || line.charAt(i) != '{') {
+      return null;
+    }
+    i = skipSpaces(line, i + 1);
+    while (i < line.length() && line.charAt(i) != '}') {
+      StringBuilder key = new StringBuilder();
+      i = readString(line, i, key);
+      if (i < 0) {
+        return null;
+      }
+      i = skipSpaces(line, i);
+      if (i == line.length() || line.charAt(i) != ':') {
+        return null;
+      }
+      i = skipSpaces(line, i + 1);
+      StringBuilder value = new StringBuilder();
+      if (i < line.length() && line.charAt(i) == '"') {
+        i = readString(line, i, value);
+        if (i < 0) {
+          return null;
+        }
+      } else {
+        while (i < line.length() && ",} \t".indexOf(line.charAt(i)) < 0) {
+          value.append(line.charAt(i++));
+        }
+      }
+      for (int f = 0; f < keys.length; f++) {
+        if (keys[f].contentEquals(key)) {
+          values[f] = value.toString();
+        }
+      }
+      i = skipSpaces(line, i);
+      if (i < line.length() && line.charAt(i) == ',') {
+        i = skipSpaces(line, i + 1);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Reads a quoted JSON string starting at the opening quote.
+   *
+   * @return The index after the closing quote, or -1 if the string is malformed.
+   */
+  private static int readString(String line, int start, StringBuilder out) {
+    if (start >= line.length() || line.charAt(start) != '"') {
+      return -1;
+    }
+    for (int i = start + 1; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        return i + 1;
+      } else if (c == '\\' && i + 1 < line.length()) {
+        char escaped = line.charAt(++i);
+        if (escaped == 'u' && i + 4 < line.length()) {
+          out.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+          i += 4;
+        } else {
+          out.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped);
+        }
+      } else {
+        out.append(c);
+      }
+    }
+    return -1;
+  }
+
+  private static int skipSpaces(String line, int i) {
+    while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Outcome of an import.
+   *
+   * @param imported The number of athletes imported.
+   * @param errors   The rejected rows.
+   */
+  record ImportResult(int imported, List<RowError> errors) {}
+
+  /**
+   * A rejected row.
+   *
+   * @param line    The line number of the row in the input file.
+   * @param message Why the row was rejected.
+   */
+  record RowError(int line, String message) {}
+}
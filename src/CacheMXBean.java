@@ -0,0 +1,27 @@
+/**
+ * Management view of the {@link AthleteCache} of every open registry,
+ * registered with the platform MBean server by
+ * {@link Metrics#registerMBeans()}.
+ */
+public interface CacheMXBean {
+  /**
+   * Returns the number of athletes found in a cache.
+   *
+   * @return The hits since the program started.
+   */
+  long getHits();
+
+  /**
+   * Returns the number of athletes that had to be built.
+   *
+   * @return The misses since the program started.
+   */
+  long getMisses();
+
+  /**
+   * Returns the share of lookups answered from a cache.
+   *
+   * @return The hits divided by all lookups, 0 if there were none.
+   */
+  double getHitRatio();
+}
@@ -0,0 +1,596 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Compact in-memory roster stored as one array per attribute.
+ *
+ * Each athlete takes a byte each for plan, category, coaching hours and
+ * competitions, a short for the weight, an int name offset and the UTF-8
+ * bytes of the name in a shared arena, i.e. a few dozen bytes instead of a
+ * full {@link Athlete} object graph. Scans such as billing or category counts
+ * walk primitive arrays. An athlete's index in the roster is its id.
+ *
+ * The columns are cut into fixed-size chunks so they never have to be copied
+ * to grow. Ids are handed out by the store, and any number of threads may
+ * fill in their slots at once without taking a lock; {@link #size()} moves
+ * past a slot once it and every slot before it are filled, so readers only
+ * ever see complete athletes.
+ */
+class ColumnarRoster {
+
+  private static final TrainingPlan[] PLANS = TrainingPlan.values();
+  private static final WeightCategory[] CATEGORIES = WeightCategory.values();
+  static final int MAX_WEIGHT = Short.MAX_VALUE; // Weights are held in a short
+  private static final int CHUNK_BITS = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS; // Athletes per chunk
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  private static final int BYTE_COLUMNS = 4; // Plans, categories, coaching hours, competitions
+  private static final int SHORT_COLUMNS = 2; // Weights, name lengths
+  private static final int DEFAULT_ARENA_SIZE = CHUNK_SIZE * 12; // Room for names of about 12 bytes
+  private static final int WRITE_BUFFER_SIZE = 1 << 16; // Holds any name, or a chunk of a short column
+  private static final VarHandle FILLED = MethodHandles.arrayElementVarHandle(
+    byte[].class
+  );
+  private static final VarHandle CATEGORY = MethodHandles.arrayElementVarHandle(
+    byte[].class
+  );
+
+  private volatile Chunk[] chunks; // Replaced, never modified, when a chunk is added
+  private final AtomicInteger size = new AtomicInteger(); // Number of leading filled slots
+
+  /**
+   * Creates an empty roster.
+   *
+   * @param capacity The number of athletes to make room for up front.
+   */
+  public ColumnarRoster(int capacity) {
+    this(capacity, DEFAULT_ARENA_SIZE);
+  }
+
+  private ColumnarRoster(int capacity, int arenaSize) {
+    Chunk[] initial = new Chunk[Math.max(1, (capacity + CHUNK_MASK) >>> CHUNK_BITS)];
+    for (int i = 0; i < initial.length; i++) {
+      initial[i] = new Chunk(arenaSize);
+    }
+    chunks = initial;
+  }
+
+  /**
+   * Returns the number of athletes in the roster.
+   *
+   * @return The number of athletes.
+   */
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * Adds an athlete to the end of the roster. Only for a roster filled by a
+   * single thread; concurrent writers use {@link #put}.
+   *
+   * @param athlete The athlete to add.
+   * @return The id of the athlete in the roster.
+   */
+  public int add(Athlete athlete) {
+    int id = size.get();
+    put(id, athlete);
+    return id;
+  }
+
+  /**
+   * Fills in the slot of an athlete whose id has already been assigned.
+   * Slots may be filled in any order and from any thread.
+   *
+   * @param id      The id of the athlete.
+   * @param athlete The athlete.
+   * @throws IllegalArgumentException if the athlete's weight does not fit
+   *         the weight column.
+   */
+  public void put(int id, Athlete athlete) {
+    checkWeight(athlete.getCurrentWeight());
+    Chunk chunk = chunkFor(id);
+    int slot = id & CHUNK_MASK;
+    chunk.plans[slot] = (byte) athlete.getTrainingPlan().ordinal();
+    chunk.categories[slot] = (byte) athlete.getWeightCategory().ordinal();
+    chunk.weights[slot] = (short) athlete.getCurrentWeight();
+    chunk.coachingHours[slot] = (byte) athlete.getPrivateCoachingHours();
+    chunk.competitions[slot] = (byte) athlete.getCompetitionsEntered();
+    chunk.putName(slot, athlete.getName().getBytes(StandardCharsets.UTF_8));
+    FILLED.setRelease(chunk.filled, slot, (byte) 1);
+    publish();
+  }
+
+  /**
+   * Returns the name of an athlete.
+   *
+   * @param id The id of the athlete.
+   * @return The name of the athlete.
+   */
+  public String getName(int id) {
+    Chunk chunk = chunk(id);
+    int slot = id & CHUNK_MASK;
+    return new String(
+      chunk.nameArena,
+      chunk.nameOffsets[slot],
+      chunk.nameLengths[slot] & 0xFFFF,
+      StandardCharsets.UTF_8
+    );
+  }
+
+  /**
+   * Copies the name of an athlete into an array of characters, without
+   * building a string if the name is plain ASCII.
+   *
+   * @param id    The id of the athlete.
+   * @param chars The array to copy the name into.
+   * @return The length of the name, or -1 if it does not fit in the array.
+   */
+  public int copyName(int id, char[] chars) {
+    Chunk chunk = chunk(id);
+    int slot = id & CHUNK_MASK;
+    byte[] arena = chunk.nameArena;
+    int offset = chunk.nameOffsets[slot];
+    int length = chunk.nameLengths[slot] & 0xFFFF;
+    for (int i = 0; i < length; i++) {
+      byte b = arena[offset + i];
+      if (b < 0) { // Not ASCII, decode it properly
+        String name = new String(arena, offset, length, StandardCharsets.UTF_8);
+        if (name.length() > chars.length) {
+          return -1;
+        }
+        name.getChars(0, name.length(), chars, 0);
+        return name.length();
+      }
+      if (i == chars.length) {
+        return -1;
+      }
+      chars[i] = (char) b;
+    }
+    return length;
+  }
+
+  /**
+   * Writes the name of an athlete to a report straight from the arena,
+   * without decoding it into a string.
+   *
+   * @param id  The id of the athlete.
+   * @param out The report to write to.
+   * @throws IOException if the report cannot be written.
+   */
+  public void writeName(int id, ReportWriter out) throws IOException {
+    Chunk chunk = chunk(id);
+    int slot = id & CHUNK_MASK;
+    out.text(chunk.nameArena, chunk.nameOffsets[slot], chunk.nameLengths[slot] & 0xFFFF);
+  }
+
+  /**
+   * Returns the training plan of an athlete.
+   *
+   * @param id The id of the athlete.
+   * @return The training plan of the athlete.
+   */
+  public TrainingPlan getTrainingPlan(int id) {
+    return PLANS[chunk(id).plans[id & CHUNK_MASK]];
+  }
+
+  /**
+   * Returns the weight category of an athlete.
+   *
+   * @param id The id of the athlete.
+   * @return The weight category of the athlete.
+   */
+  public WeightCategory getWeightCategory(int id) {
+    return CATEGORIES[chunk(id).categories[id & CHUNK_MASK]];
+  }
+
+  /**
+   * Returns the current weight of an athlete.
+   *
+   * @param id The id of the athlete.
+   * @return The current weight in kilograms.
+   */
+  public int getCurrentWeight(int id) {
+    return chunk(id).weights[id & CHUNK_MASK];
+  }
+
+  /**
+   * Returns the private coaching hours per week of an athlete.
+   *
+   * @param id The id of the athlete.
+   * @return The private coaching hours per week.
+   */
+  public int getPrivateCoachingHours(int id) {
+    return chunk(id).coachingHours[id & CHUNK_MASK];
+  }
+
+  /**
+   * Returns the number of competitions an athlete entered this month.
+   *
+   * @param id The id of the athlete.
+   * @return The number of competitions entered.
+   */
+  public int getCompetitionsEntered(int id) {
+    return chunk(id).competitions[id & CHUNK_MASK];
+  }
+
+  /**
+   * Updates the current weight of an athlete.
+   *
+   * @param id            The id of the athlete.
+   * @param currentWeight The new current weight in kilograms.
+   * @throws IllegalArgumentException if the weight does not fit the weight
+   *         column.
+   */
+  public void setCurrentWeight(int id, int currentWeight) {
+    chunk(id).weights[id & CHUNK_MASK] = (short) checkWeight(currentWeight);
+  }
+
+  /**
+   * Checks that a weight fits the weight column, from 0 to
+   * {@link #MAX_WEIGHT} kilograms.
+   *
+   * @param weight The weight in kilograms.
+   * @return The weight.
+   * @throws IllegalArgumentException if the weight is out of range.
+   */
+  static int checkWeight(int weight) {
+    if (weight < 0 || weight > MAX_WEIGHT) {
+      throw new IllegalArgumentException(
+        "Weight must be from 0 to " + MAX_WEIGHT + " kg: " + weight
+      );
+    }
+    return weight;
+  }
+
+  /**
+   * Updates the weight category of an athlete.
+   *
+   * @param id             The id of the athlete.
+   * @param weightCategory The new weight category.
+   * @return The previous weight category, swapped out atomically so that
+   *         concurrent changes each see the category they replaced.
+   */
+  public WeightCategory setWeightCategory(int id, WeightCategory weightCategory) {
+    byte previous = (byte) CATEGORY.getAndSet(
+      chunk(id).categories,
+      id & CHUNK_MASK,
+      (byte) weightCategory.ordinal()
+    );
+    return CATEGORIES[previous];
+  }
+
+  /**
+   * Rebuilds a full athlete object from the columns.
+   *
+   * @param id The id of the athlete.
+   * @return The athlete.
+   */
+  public Athlete toAthlete(int id) {
+    return new Athlete(
+      getName(id),
+      getTrainingPlan(id),
+      getCurrentWeight(id),
+      getPrivateCoachingHours(id),
+      getCompetitionsEntered(id),
+      getWeightCategory(id)
+    );
+  }
+
+  /**
+   * Counts the athletes in each weight category.
+   *
+   * @return The counts indexed by weight category ordinal.
+   */
+  public int[] countByWeightCategory() {
+    int[] counts = new int[CATEGORIES.length];
+    int count = size.get();
+    Chunk[] all = chunks;
+    for (int start = 0; start < count; start += CHUNK_SIZE) {
+      byte[] categories = all[start >>> CHUNK_BITS].categories;
+      int end = Math.min(CHUNK_SIZE, count - start);
+      for (int i = 0; i < end; i++) {
+        counts[categories[i]]++;
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Adds up the monthly fees of the whole roster from the current fee table.
+   *
+   * @return The total monthly fees in cents.
+   */
+  public long totalMonthlyCents() {
+    FeeSchedule fees = FeeSchedule.current();
+    int count = size.get();
+    Chunk[] all = chunks;
+    long total = 0;
+    for (int start = 0; start < count; start += CHUNK_SIZE) {
+      Chunk chunk = all[start >>> CHUNK_BITS];
+      int end = Math.min(CHUNK_SIZE, count - start);
+      for (int i = 0; i < end; i++) {
+        total +=
+          fees.totalCents(
+            PLANS[chunk.plans[i]],
+            chunk.competitions[i],
+            chunk.coachingHours[i]
+          );
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Hands the columns of the first athletes to a visitor one chunk at a
+   * time, so that a scan can run over the arrays directly. The arrays must
+   * not be modified.
+   *
+   * @param count   The number of athletes to visit, at most the size.
+   * @param visitor The visitor.
+   */
+  public void forEachChunk(int count, ChunkVisitor visitor) {
+    Chunk[] all = chunks;
+    for (int start = 0; start < count; start += CHUNK_SIZE) {
+      Chunk chunk = all[start >>> CHUNK_BITS];
+      visitor.visit(
+        start,
+        Math.min(CHUNK_SIZE, count - start),
+        chunk.plans,
+        chunk.categories,
+        chunk.weights,
+        chunk.coachingHours,
+        chunk.competitions
+      );
+    }
+  }
+
+  /**
+   * Writes the columns of the first athletes to a file, one column after
+   * another: training plans, weight categories, coaching hours and
+   * competitions as a byte per athlete, weights and name lengths as a short
+   * per athlete, and then the UTF-8 names back to back. {@link #read} loads
+   * them back.
+   *
+   * @param out      The file to write to.
+   * @param position The offset to start writing at.
+   * @param count    The number of athletes to write, at most the size.
+   * @param checksum The checksum to add the written bytes to.
+   * @return The offset just past the columns.
+   * @throws IOException if the file cannot be written.
+   */
+  public long write(FileChannel out, long position, int count, CRC32 checksum)
+    throws IOException {
+    Chunk[] all = chunks;
+    ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    for (int column = 0; column < BYTE_COLUMNS; column++) {
+      for (int start = 0; start < count; start += CHUNK_SIZE) {
+        Chunk chunk = all[start >>> CHUNK_BITS];
+        buffer.put(chunk.byteColumn(column), 0, Math.min(CHUNK_SIZE, count - start)); // Copied first, as categories may change meanwhile
+        buffer.flip();
+        position = write(out, position, buffer, checksum);
+        buffer.clear();
+      }
+    }
+    for (int column = 0; column < SHORT_COLUMNS; column++) {
+      for (int start = 0; start < count; start += CHUNK_SIZE) {
+        Chunk chunk = all[start >>> CHUNK_BITS];
+        short[] values = chunk.shortColumn(column);
+        int end = Math.min(CHUNK_SIZE, count - start);
+        buffer.asShortBuffer().put(values, 0, end);
+        buffer.limit(end * Short.BYTES);
+        position = write(out, position, buffer, checksum);
+        buffer.clear();
+      }
+    }
+    for (int start = 0; start < count; start += CHUNK_SIZE) {
+      Chunk chunk = all[start >>> CHUNK_BITS];
+      byte[] arena = chunk.nameArena; // Names below the count never move within it
+      int end = Math.min(CHUNK_SIZE, count - start);
+      for (int i = 0; i < end; i++) {
+        int length = chunk.nameLengths[i] & 0xFFFF;
+        if (buffer.remaining() < length) {
+          buffer.flip();
+          position = write(out, position, buffer, checksum);
+          buffer.clear();
+        }
+        buffer.put(arena, chunk.nameOffsets[i], length);
+      }
+    }
+    buffer.flip();
+    return write(out, position, buffer, checksum);
+  }
+
+  /**
+   * Builds a roster from columns written by {@link #write}, copying each
+   * column into place in bulk.
+   *
+   * @param in    The columns, read from the buffer's position onwards.
+   * @param count The number of athletes the columns hold.
+   * @return The roster, holding the athletes with ids 0 to count - 1.
+   */
+  public static ColumnarRoster read(ByteBuffer in, int count) {
+    ColumnarRoster roster = new ColumnarRoster(count, 0); // Arenas are sized once the names are known
+    Chunk[] all = roster.chunks;
+    for (int column = 0; column < BYTE_COLUMNS; column++) {
+      for (int start = 0; start < count; start += CHUNK_SIZE) {
+        Chunk chunk = all[start >>> CHUNK_BITS];
+        byte[] values = chunk.byteColumn(column);
+        in.get(values, 0, Math.min(CHUNK_SIZE, count - start));
+      }
+    }
+    for (int column = 0; column < SHORT_COLUMNS; column++) {
+      ShortBuffer shorts = in.asShortBuffer();
+      for (int start = 0; start < count; start += CHUNK_SIZE) {
+        Chunk chunk = all[start >>> CHUNK_BITS];
+        short[] values = chunk.shortColumn(column);
+        shorts.get(values, 0, Math.min(CHUNK_SIZE, count - start));
+      }
+      in.position(in.position() + count * Short.BYTES);
+    }
+    for (int start = 0; start < count; start += CHUNK_SIZE) {
+      Chunk chunk = all[start >>> CHUNK_BITS];
+      int end = Math.min(CHUNK_SIZE, count - start);
+      int total = 0;
+      for (int i = 0; i < end; i++) {
+        chunk.nameOffsets[i] = total;
+        total += chunk.nameLengths[i] & 0xFFFF;
+      }
+      byte[] arena = new byte[total];
+      in.get(arena);
+      chunk.nameArena = arena;
+      chunk.nameEnd = total;
+      Arrays.fill(chunk.filled, 0, end, (byte) 1);
+    }
+    roster.size.set(count);
+    return roster;
+  }
+
+  private static long write(
+    FileChannel out,
+    long position,
+    ByteBuffer bytes,
+    CRC32 checksum
+  ) throws IOException {
+    int length = bytes.remaining();
+    checksum.update(bytes.duplicate());
+    AthleteStore.writeFully(out, bytes, position);
+    return position + length;
+  }
+
+  /**
+   * Returns the chunk holding a published athlete.
+   */
+  private Chunk chunk(int id) {
+    if (id < 0 || id >= size.get()) {
+      throw new IndexOutOfBoundsException("No athlete with id " + id);
+    }
+    return chunks[id >>> CHUNK_BITS];
+  }
+
+  /**
+   * Returns the chunk for a slot being filled, adding chunks as needed.
+   */
+  private Chunk chunkFor(int id) {
+    if (id < 0) {
+      throw new IndexOutOfBoundsException("No athlete with id " + id);
+    }
+    int index = id >>> CHUNK_BITS;
+    Chunk[] all = chunks;
+    if (index < all.length) {
+      return all[index];
+    }
+    synchronized (this) {
+      all = chunks;
+      if (index >= all.length) {
+        int length = all.length;
+        all = Arrays.copyOf(all, Math.max(index + 1, length * 2));
+        for (int i = length; i < all.length; i++) {
+          all[i] = new Chunk(DEFAULT_ARENA_SIZE);
+        }
+        chunks = all;
+      }
+      return all[index];
+    }
+  }
+
+  /**
+   * Moves the size past every filled slot at its end. Each writer calls this
+   * after filling its own slot, so whichever writer fills the last gap also
+   * publishes the slots filled after it.
+   */
+  private void publish() {
+    while (true) {
+      int count = size.get();
+      Chunk[] all = chunks;
+      int index = count >>> CHUNK_BITS;
+      if (
+        index >= all.length ||
+        (byte) FILLED.getAcquire(all[index].filled, count & CHUNK_MASK) == 0
+      ) {
+        return;
+      }
+      size.compareAndSet(count, count + 1);
+    }
+  }
+
+  /**
+   * Receives the columns of a block of athletes from {@link #forEachChunk}.
+   * Entry i of each array belongs to the athlete with id firstId + i.
+   */
+  @FunctionalInterface
+  interface ChunkVisitor {
+    void visit(
+      int firstId,
+      int length,
+      byte[] plans,
+      byte[] categories,
+      short[] weights,
+      byte[] coachingHours,
+      byte[] competitions
+    );
+  }
+
+  /**
+   * One block of {@link #CHUNK_SIZE} athletes.
+   */
+  private static final class Chunk {
+
+    private final byte[] plans = new byte[CHUNK_SIZE];
+    private final byte[] categories = new byte[CHUNK_SIZE];
+    private final short[] weights = new short[CHUNK_SIZE];
+    private final byte[] coachingHours = new byte[CHUNK_SIZE];
+    private final byte[] competitions = new byte[CHUNK_SIZE];
+    private final int[] nameOffsets = new int[CHUNK_SIZE]; // Start of each name in the arena
+    private final short[] nameLengths = new short[CHUNK_SIZE];
+    private final byte[] filled = new byte[CHUNK_SIZE]; // 1 once a slot is complete
+    private volatile byte[] nameArena; // UTF-8 bytes of every name, back to back
+    private int nameEnd; // Guarded by this
+
+    private Chunk(int arenaSize) {
+      nameArena = new byte[arenaSize];
+    }
+
+    /**
+     * Returns a one-byte column in the order they are written to a file.
+     */
+    private byte[] byteColumn(int column) {
+      return switch (column) {
+        case 0 -> plans;
+        case 1 -> categories;
+        case 2 -> coachingHours;
+        default -> competitions;
+      };
+    }
+
+    /**
+     * Returns a two-byte column in the order they are written to a file.
+     */
+    private short[] shortColumn(int column) {
+      return column == 0 ? weights : nameLengths;
+    }
+
+    /**
+     * Copies a name into the arena. Names are short, so writers of one
+     * chunk share its lock only for the copy.
+     */
+    private synchronized void putName(int slot, byte[] name) {
+      byte[] arena = nameArena;
+      if (nameEnd + name.length > arena.length) {
+        arena = Arrays.copyOf(arena, Math.max(arena.length * 2, nameEnd + name.length));
+      }
+      System.arraycopy(name, 0, arena, nameEnd, name.length);
+      nameOffsets[slot] = nameEnd;
+      nameLengths[slot] = (short) name.length;
+      nameEnd += name.length;
+      nameArena = arena;
+    }
+  }
+}
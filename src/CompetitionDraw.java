@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Draw for a monthly competition: who fights whom in each weight category.
+ *
+ * The entrants are the athletes on an eligible plan (see
+ * {@link CompetitionRules}) who entered at least one competition this
+ * month. They are found through the registry's bitmap indexes, one weight
+ * category at a time, and every category is drawn on its own task of the
+ * common fork/join pool.
+ *
+ * Within a category athletes are seeded Elite before Intermediate, then by
+ * competitions entered, with ties broken by a pseudo-random order derived
+ * from the draw's seed, so the same seed always gives the same draw. Seeds
+ * are then laid out either in a single-elimination bracket, where the top
+ * seeds get the byes and can only meet late, or snaked across pools of
+ * {@link #POOL_SIZE}.
+ */
+abstract class CompetitionDraw {
+
+  static final int POOL_SIZE = 4; // Athletes per pool at most
+
+  private static final byte[] EMPTY = new byte[0];
+  private static final int ID_BITS = 32;
+  private static final int TIE_BREAK_BITS = 20;
+  private static final int COMPETITIONS_BITS = 8;
+  private static final int MAX_COMPETITIONS = (1 << COMPETITIONS_BITS) - 1;
+  private static final TrainingPlan[] PLANS = TrainingPlan.values();
+
+  /**
+   * Shape of the draw.
+   */
+  enum Format {
+    ELIMINATION,
+    POOLS,
+  }
+
+  /**
+   * Draws every weight category for a competition.
+   *
+   * @param registry The registry holding the athletes.
+   * @param day      The day of the competition.
+   * @param format   The shape of the draw.
+   * @param seed     The seed of the tie-breaking order.
+   * @return The draw.
+   */
+  public static Draw run(
+    AthleteRegistry registry,
+    LocalDate day,
+    Format format,
+    long seed
+  ) {
+    ColumnarRoster roster = registry.getRoster();
+    TrainingPlan[] eligible = CompetitionRules.ELIGIBLE_PLANS.toArray(
+      new TrainingPlan[0]
+    );
+    List<CategoryDraw> categories = Arrays
+      .stream(WeightCategory.values())
+      .parallel()
+      .map(category -> {
+        BitSet entrants = registry.select(
+          new AthleteQuery()
+            .plans(eligible)
+            .categories(category)
+            .competitionsBetween(1, Integer.MAX_VALUE)
+        );
+        int[] seeded = seed(roster, entrants, seed);
+        int[][] groups = format == Format.ELIMINATION
+          ? bracket(seeded.length)
+          : pools(seeded.length);
+        return new CategoryDraw(category, seeded, groups);
+      })
+      .toList();
+    return new Draw(day, format, categories);
+  }
+
+  /**
+   * Writes a draw as a report, one row per match of the first round or
+   * per pool place. Byes are left blank.
+   *
+   * @param draw   The draw.
+   * @param roster The roster holding the athletes' names.
+   * @param file   The report file; a ".json" name selects JSON.
+   * @return The number of rows written.
+   * @throws IOException if the file cannot be written.
+   */
+  public static long write(Draw draw, ColumnarRoster roster, Path file)
+    throws IOException {
+    boolean elimination = draw.format() == Format.ELIMINATION;
+    String[] columns = elimination
+      ? new String[] {
+        "category",
+        "match",
+        "seedA",
+        "idA",
+        "nameA",
+        "seedB",
+        "idB",
+        "nameB",
+      }
+      : new String[] { "category", "pool", "seed", "id", "name" };
+    try (
+      ReportWriter out = new ReportWriter(
+        file,
+        ReportWriter.Format.of(file),
+        columns
+      )
+    ) {
+      for (CategoryDraw category : draw.categories()) {
+        byte[] name = category
+          .category()
+          .getName()
+          .getBytes(StandardCharsets.UTF_8);
+        int[][] groups = category.groups();
+        for (int g = 0; g < groups.length; g++) {
+          if (elimination) {
+            out.text(name).number(g + 1);
+            writeSeed(out, roster, category, groups[g][0]);
+            writeSeed(out, roster, category, groups[g][1]);
+            out.endRow();
+          } else {
+            for (int seed : groups[g]) {
+              out.text(name).number(g + 1);
+              writeSeed(out, roster, category, seed);
+              out.endRow();
+            }
+          }
+        }
+      }
+      return out.getRows();
+    }
+  }
+
+  /**
+   * Orders a category's entrants by seed.
+   *
+   * @return The ids of the entrants, top seed first.
+   */
+  private static int[] seed(ColumnarRoster roster, BitSet entrants, long seed) {
+    long[] keys = new long[entrants.cardinality()];
+    int n = 0;
+    for (
+      int id = entrants.nextSetBit(0);
+      id >= 0;
+      id = entrants.nextSetBit(id + 1)
+    ) {
+      long rank = PLANS.length - 1 - roster.getTrainingPlan(id).ordinal(); // Elite first
+      long competitions =
+        MAX_COMPETITIONS -
+        Math.min(roster.getCompetitionsEntered(id), MAX_COMPETITIONS); // Most first
+      long tieBreak = mix(seed ^ id) & ((1L << TIE_BREAK_BITS) - 1);
+      keys[n++] =
+        rank << (ID_BITS + TIE_BREAK_BITS + COMPETITIONS_BITS) |
+        competitions << (ID_BITS + TIE_BREAK_BITS) |
+        tieBreak << ID_BITS |
+        id;
+    }
+    Arrays.sort(keys); // Smallest key is the top seed
+    int[] seeded = new int[n];
+    for (int i = 0; i < n; i++) {
+      seeded[i] = (int) keys[i];
+    }
+    return seeded;
+  }
+
+  /**
+   * Lays out a single-elimination bracket for a number of seeds.
+   *
+   * The bracket has the next power of two of places; seeds are placed so
+   * that seeds s and size + 1 - s meet in the first round and the top two
+   * can only meet in the final. Places beyond the last seed are byes.
+   *
+   * @return The first-round matches as pairs of seeds, 0 for a bye.
+   */
+  private static int[][] bracket(int count) {
+    if (count == 0) {
+      return new int[0][];
+    }
+    int size = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+    int[] order = { 1 };
+    while (order.length < size) {
+      int[] next = new int[order.length * 2];
+      for (int i = 0; i < order.length; i++) {
+        next[2 * i] = order[i];
+        next[2 * i + 1] = next.length + 1 - order[i];
+      }
+      order = next;
+    }
+    int[][] matches = new int[size / 2][];
+    for (int m = 0; m < matches.length; m++) {
+      matches[m] =
+        new int[] {
+          order[2 * m] <= count ? order[2 * m] : 0,
+          order[2 * m + 1] <= count ? order[2 * m + 1] : 0,
+        };
+    }
+    return matches;
+  }
+
+  /**
+   * Snakes seeds across as few pools of at most {@link #POOL_SIZE} as
+   * possible, so every pool gets a fair share of strong and weak seeds.
+   *
+   * @return The seeds in each pool.
+   */
+  private static int[][] pools(int count) {
+    int poolCount = (count + POOL_SIZE - 1) / POOL_SIZE;
+    int[][] pools = new int[poolCount][];
+    for (int p = 0; p < poolCount; p++) {
+      pools[p] = new int[count / poolCount + (p < count % poolCount ? 1 : 0)];
+    }
+    int[] filled = new int[poolCount];
+    for (int seed = 1; seed <= count; seed++) {
+      int round = (seed - 1) / poolCount;
+      int position = (seed - 1) % poolCount;
+      int p = round % 2 == 0 ? position : poolCount - 1 - position;
+      if (filled[p] == pools[p].length) { // Last, partial round: take the next free pool
+        p = 0;
+        while (filled[p] == pools[p].length) {
+          p++;
+        }
+      }
+      pools[p][filled[p]++] = seed;
+    }
+    return pools;
+  }
+
+  private static void writeSeed(
+    ReportWriter out,
+    ColumnarRoster roster,
+    CategoryDraw category,
+    int seed
+  ) throws IOException {
+    if (seed == 0) {
+      out.text(EMPTY).text(EMPTY).text(EMPTY);
+      return;
+    }
+    int id = category.seeded()[seed - 1];
+    out.number(seed).number(id);
+    roster.writeName(id, out);
+  }
+
+  /**
+   * Scrambles a value into a well-spread pseudo-random one (SplitMix64).
+   */
+  private static long mix(long value) {
+    long z = value + 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * The draw of one weight category.
+   *
+   * @param category The weight category.
+   * @param seeded   The ids of the entrants, top seed first.
+   * @param groups   The first-round matches, as pairs of seed numbers with
+   *                 0 for a bye, or the pools, as the seed numbers in each.
+   *                 Seed n is the athlete at seeded[n - 1].
+   */
+  record CategoryDraw(WeightCategory category, int[] seeded, int[][] groups) {}
+
+  /**
+   * The draw of a competition.
+   *
+   * @param day        The day of the competition.
+   * @param format     The shape of the draw.
+   * @param categories The draw of each weight category.
+   */
+  record Draw(LocalDate day, Format format, List<CategoryDraw> categories) {
+    /**
+     * Returns the number of athletes drawn in all categories.
+     *
+     * @return The number of entrants.
+     */
+    public int entrants() {
+      int entrants = 0;
+      for (CategoryDraw category : categories) {
+        entrants += category.seeded().length;
+      }
+      return entrants;
+    }
+  }
+}
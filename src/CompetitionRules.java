@@ -1,21 +1,46 @@
+import java.io.PrintStream;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.TemporalAdjusters;
+import java.util.EnumSet;
+import java.util.Set;
+
 abstract class CompetitionRules {
 
+  static final Set<TrainingPlan> ELIGIBLE_PLANS = EnumSet.of(
+    TrainingPlan.INTERMEDIATE,
+    TrainingPlan.ELITE
+  ); // Plans whose athletes may enter competitions
+
   /*
-   * Method to display rules
+   * Method to display rules on a stream
    */
-  public static void displayRules() {
-    System.out.println("Competition Rules:");
-    System.out.println(
+  public static void displayRules(PrintStream out) {
+    out.println("Competition Rules:");
+    out.println(
       "1. Athletes can enter a maximum of three competitions per month."
     );
-    System.out.println(
+    out.println(
       "2. Only Intermediate and Elite athletes are eligible to enter competitions."
     );
-    System.out.println(
+    out.println(
       "3. Competitions are held on the second Saturday of each month."
     );
-    System.out.println(
+    out.println(
       "4. Athletes can receive a maximum of five hours’ private coaching a week."
     );
   }
+
+  /**
+   * Returns the day of a month's competition, the second Saturday.
+   *
+   * @param month The month.
+   * @return The competition day.
+   */
+  public static LocalDate competitionDay(YearMonth month) {
+    return month
+      .atDay(1)
+      .with(TemporalAdjusters.dayOfWeekInMonth(2, DayOfWeek.SATURDAY));
+  }
 }
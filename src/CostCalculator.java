@@ -1,53 +1,174 @@
-import java.text.DecimalFormat;
+import java.io.PrintStream;
 
 abstract class CostCalculator {
 
+  static final int MAX_COACHING_HOURS = 5; // Private coaching hours billed per week at most
+  static final int WEEKS_PER_MONTH = 4;
+
+  /**
+   * Calculates the monthly cost of an athlete's training plan, competitions,
+   * and private coaching without printing anything. The items are looked up
+   * in the current {@link FeeSchedule}.
+   *
+   * @param trainingPlan               The selected training plan for the athlete.
+   * @param competitionsEntered        The number of competitions the athlete has entered for the month.
+   * @param privateCoachingHoursPerWeek The number of private coaching hours the athlete selected per week.
+   * @return The breakdown of the costs for the month.
+   */
+  public static CostBreakdown calculate(
+    TrainingPlan trainingPlan,
+    int competitionsEntered,
+    int privateCoachingHoursPerWeek
+  ) {
+    return calculate(
+      FeeSchedule.current(),
+      trainingPlan,
+      competitionsEntered,
+      privateCoachingHoursPerWeek
+    );
+  }
+
+  /**
+   * Calculates the monthly cost of an athlete's training plan, competitions,
+   * and private coaching from a given fee table.
+   *
+   * @param fees                       The fee table to look the items up in.
+   * @param trainingPlan               The selected training plan for the athlete.
+   * @param competitionsEntered        The number of competitions the athlete has entered for the month.
+   * @param privateCoachingHoursPerWeek The number of private coaching hours the athlete selected per week.
+   * @return The breakdown of the costs for the month.
+   */
+  public static CostBreakdown calculate(
+    FeeSchedule fees,
+    TrainingPlan trainingPlan,
+    int competitionsEntered,
+    int privateCoachingHoursPerWeek
+  ) {
+    long start = System.nanoTime();
+    CostBreakdown cost = new CostBreakdown(
+      trainingPlan,
+      competitionsEntered,
+      privateCoachingHoursPerWeek,
+      fees.trainingPlanCents(trainingPlan), // Cost of the training plan for the month
+      fees.competitionsCents(competitionsEntered), // Cost of competitions for the month
+      fees.coachingCents(privateCoachingHoursPerWeek) // Cost of private coaching for the month, limited to a maximum of 5 hours per week
+    );
+    Metrics.COST.recordSince(start);
+    return cost;
+  }
+
+  /**
+   * Calculates the monthly cost of an athlete.
+   *
+   * @param athlete The athlete to calculate the cost for.
+   * @return The breakdown of the costs for the month.
+   */
+  public static CostBreakdown calculate(Athlete athlete) {
+    return calculate(
+      athlete.getTrainingPlan(),
+      athlete.getCompetitionsEntered(),
+      athlete.getPrivateCoachingHours()
+    );
+  }
+
+  /**
+   * Calculates the total monthly cost of an athlete in cents with a single
+   * lookup in the fee table.
+   *
+   * @param athlete The athlete to calculate the cost for.
+   * @return The total cost for the month in cents.
+   */
+  public static long totalCents(Athlete athlete) {
+    return FeeSchedule
+      .current()
+      .totalCents(
+        athlete.getTrainingPlan(),
+        athlete.getCompetitionsEntered(),
+        athlete.getPrivateCoachingHours()
+      );
+  }
+
   /**
    * Calculates the total cost for an athlete's training plan, competitions, and private coaching.
    * Prints the breakdown of costs for each item and the total cost for the month.
    *
+   * @param out                        The stream to print the breakdown to.
    * @param trainingPlan               The selected training plan for the athlete.
    * @param competitionsEntered        The number of competitions the athlete has entered for the month.
    * @param privateCoachingHoursPerWeek The number of private coaching hours the athlete selected per week.
    */
   public static void calculateTotalCost(
+    PrintStream out,
     TrainingPlan trainingPlan,
     int competitionsEntered,
     int privateCoachingHoursPerWeek
-  ) { // Create a decimal format for displaying currency values
-    DecimalFormat df = new DecimalFormat("#.00");
-
-    double trainingPlanCost = trainingPlan.getWeeklyFee() * 4; // Calculate the cost of the training plan for the month
-    double competitionsCost = competitionsEntered * 22.00; // Calculate the cost of competitions for the month
-    double coachingCost = Math.min(privateCoachingHoursPerWeek, 5) * 9.00 * 4; // Calculate the cost of private coaching for the month, limited to a maximum of 5 hours per week
+  ) {
+    FeeSchedule fees = FeeSchedule.current(); // The rates printed are the rates charged
+    CostBreakdown cost = calculate(
+      fees,
+      trainingPlan,
+      competitionsEntered,
+      privateCoachingHoursPerWeek
+    );
+    StringBuilder line = new StringBuilder(96);
 
     // Display the breakdown of costs for the training plan
-    System.out.println("Training Plan Cost:");
-    System.out.println(
-      trainingPlan.getName() +
-      " $" +
-      df.format(trainingPlan.getWeeklyFee()) +
-      " per week => 4 weeks per month => Total $" +
-      df.format(trainingPlanCost)
-    );
+    out.println("Training Plan Cost:");
+    line.append(trainingPlan.getName()).append(" $");
+    FeeSchedule.appendCents(line, Math.round(trainingPlan.getWeeklyFee() * 100));
+    line.append(" per week => 4 weeks per month => Total $");
+    FeeSchedule.appendCents(line, cost.trainingPlanCents());
+    out.println(line);
     // Display the breakdown of costs for competitions
-    System.out.println("\nCompetitions Cost:");
-    System.out.println(
-      "$22.00 per Competition => " +
-      competitionsEntered +
-      " entered this month => Total $" +
-      df.format(competitionsCost)
-    );
+    out.println("\nCompetitions Cost:");
+    line.setLength(0);
+    line.append('$');
+    FeeSchedule.appendCents(line, fees.getCompetitionFeeCents());
+    line.append(" per Competition => ").append(competitionsEntered);
+    line.append(" entered this month => Total $");
+    FeeSchedule.appendCents(line, cost.competitionsCents());
+    out.println(line);
     // Display the breakdown of costs for private coaching
-    System.out.println("\nPrivate Coaching Cost:");
-    System.out.println(
-      "$9.00 per hour => selected " +
-      privateCoachingHoursPerWeek +
-      " hr per week => 4 weeks per month => Total $" +
-      df.format(coachingCost)
-    );
-    // Calculate and display the total cost for the month
-    double totalCost = trainingPlanCost + competitionsCost + coachingCost;
-    System.out.println("\nTotal cost for this month $" + df.format(totalCost));
+    out.println("\nPrivate Coaching Cost:");
+    line.setLength(0);
+    line.append('$');
+    FeeSchedule.appendCents(line, fees.getCoachingRateCents());
+    line.append(" per hour => selected ").append(privateCoachingHoursPerWeek);
+    line.append(" hr per week => 4 weeks per month => Total $");
+    FeeSchedule.appendCents(line, cost.coachingCents());
+    out.println(line);
+    // Display the total cost for the month
+    line.setLength(0);
+    line.append("\nTotal cost for this month $");
+    FeeSchedule.appendCents(line, cost.totalCents());
+    out.println(line);
+  }
+
+  /**
+   * Monthly cost of one athlete, item by item, in cents.
+   *
+   * @param trainingPlan                The training plan billed.
+   * @param competitionsEntered         The number of competitions billed.
+   * @param privateCoachingHoursPerWeek The private coaching hours per week billed.
+   * @param trainingPlanCents           The cost of the training plan for the month.
+   * @param competitionsCents           The cost of competitions for the month.
+   * @param coachingCents               The cost of private coaching for the month.
+   */
+  record CostBreakdown(
+    TrainingPlan trainingPlan,
+    int competitionsEntered,
+    int privateCoachingHoursPerWeek,
+    long trainingPlanCents,
+    long competitionsCents,
+    long coachingCents
+  ) {
+    /**
+     * Returns the total cost for the month.
+     *
+     * @return The sum of all items in cents.
+     */
+    public long totalCents() {
+      return trainingPlanCents + competitionsCents + coachingCents;
+    }
   }
 }
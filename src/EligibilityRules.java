@@ -0,0 +1,434 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * The limits an athlete's details must respect, held as data rather than
+ * code. Rules are read from rules.properties when it exists, one rule per
+ * key:
+ *
+ * <pre>
+ * competitions=competitions between 0 3 | Competitions entered must be between 0 and 3
+ * competitions.beginner=competitions = 0 when plan Beginner | Beginner athletes cannot enter competitions
+ * </pre>
+ *
+ * A rule names a field (weight, coachingHours or competitions), a
+ * comparison (&lt;, &lt;=, &gt;, &gt;=, = or between) and optionally the
+ * plans it applies to and the message shown when it is broken. Without a
+ * file the rules the program always enforced apply, and {@link #watch}
+ * swaps in new rules whenever the file changes.
+ *
+ * Every rule is compiled to a range of allowed values for one field, and
+ * the rules for each plan are merged into one range per field, so checking
+ * a valid athlete takes three range tests; the rules are only looked at one
+ * by one to explain a violation.
+ */
+final class EligibilityRules {
+
+  static final Path DEFAULT_PATH = Path.of("rules.properties");
+
+  private static final String DEFAULT_RULES =
+    "coachingHours=coachingHours between 0 5 | Private coaching hours must be between 0 and 5\n" +
+    "competitions=competitions between 0 3 | Competitions entered must be between 0 and 3\n" +
+    "competitions.beginner=competitions = 0 when plan Beginner | Beginner athletes cannot enter competitions\n" +
+    "weight=weight between 0 1000 | Weight must be between 0 and 1000 kg\n";
+  private static final int BLOCK_SIZE = 8192; // Athletes checked per task
+  private static final TrainingPlan[] PLANS = TrainingPlan.values();
+  private static final Field[] FIELDS = Field.values();
+
+  private static volatile EligibilityRules current = loadOrDefault(DEFAULT_PATH);
+
+  private final Rule[] rules; // In key order
+  private final Rule[][] rulesByPlan; // Rules applying to each plan
+  private final int[] min; // Lowest allowed value by [plan][field]
+  private final int[] max; // Highest allowed value by [plan][field]
+
+  /**
+   * Athlete detail a rule constrains.
+   */
+  enum Field {
+    WEIGHT("weight"),
+    COACHING_HOURS("coachingHours"),
+    COMPETITIONS("competitions");
+
+    private final String key;
+
+    Field(String key) {
+      this.key = key;
+    }
+
+    private static Field of(String key) {
+      for (Field field : FIELDS) {
+        if (field.key.equalsIgnoreCase(key)) {
+          return field;
+        }
+      }
+      throw new IllegalArgumentException("Unknown field " + key);
+    }
+  }
+
+  /**
+   * Compiles a set of rules.
+   *
+   * @param rules The rules.
+   */
+  EligibilityRules(List<Rule> rules) {
+    this.rules = rules.toArray(new Rule[0]);
+    this.rulesByPlan = new Rule[PLANS.length][];
+    this.min = new int[PLANS.length * FIELDS.length];
+    this.max = new int[PLANS.length * FIELDS.length];
+    Arrays.fill(min, Integer.MIN_VALUE);
+    Arrays.fill(max, Integer.MAX_VALUE);
+    for (TrainingPlan plan : PLANS) {
+      List<Rule> applying = new ArrayList<>();
+      for (Rule rule : rules) {
+        if (rule.appliesTo(plan)) {
+          applying.add(rule);
+          int slot = slot(plan, rule.field());
+          min[slot] = Math.max(min[slot], rule.min());
+          max[slot] = Math.min(max[slot], rule.max());
+        }
+      }
+      rulesByPlan[plan.ordinal()] = applying.toArray(new Rule[0]);
+    }
+  }
+
+  /**
+   * Returns the rules in use.
+   *
+   * @return The current rules.
+   */
+  public static EligibilityRules current() {
+    return current;
+  }
+
+  /**
+   * Reads rules from a properties file.
+   *
+   * @param path The properties file.
+   * @return The compiled rules.
+   * @throws IOException if the file cannot be read.
+   * @throws IllegalArgumentException if a rule cannot be parsed.
+   */
+  public static EligibilityRules load(Path path) throws IOException {
+    try (Reader reader = Files.newBufferedReader(path)) {
+      return parse(reader);
+    }
+  }
+
+  /**
+   * Reloads the rules from a properties file. The rules in use are kept if
+   * the file cannot be read or holds an invalid rule.
+   *
+   * @param path The properties file.
+   * @return true if the new rules are now in use, false otherwise.
+   */
+  public static boolean reload(Path path) {
+    try {
+      current = load(path);
+      return true;
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Error loading rules from " + path + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Starts a daemon thread that reloads the rules whenever the properties
+   * file is created or modified.
+   *
+   * @param path The properties file to watch.
+   * @return The watching thread.
+   * @throws IOException if the directory cannot be watched.
+   */
+  public static Thread watch(Path path) throws IOException {
+    return FileWatcher.watch(
+      path,
+      "eligibility-rules-watcher",
+      EligibilityRules::reload
+    );
+  }
+
+  /**
+   * Returns the rules, in key order.
+   *
+   * @return The rules.
+   */
+  public List<Rule> getRules() {
+    return List.of(rules);
+  }
+
+  /**
+   * Returns the highest value a field may take for athletes on a plan.
+   *
+   * @param field The field.
+   * @param plan  The training plan.
+   * @return The highest allowed value, or Integer.MAX_VALUE if unlimited.
+   */
+  public int max(Field field, TrainingPlan plan) {
+    return max[slot(plan, field)];
+  }
+
+  /**
+   * Checks one field of an athlete on a plan.
+   *
+   * @param field The field.
+   * @param plan  The training plan.
+   * @param value The value of the field.
+   * @return The message of the first rule broken, or null if none is.
+   */
+  public String check(Field field, TrainingPlan plan, int value) {
+    int slot = slot(plan, field);
+    if (value >= min[slot] && value <= max[slot]) {
+      return null;
+    }
+    for (Rule rule : rulesByPlan[plan.ordinal()]) {
+      if (rule.field() == field && !rule.allows(value)) {
+        return rule.message();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks whether an athlete's details break no rule.
+   *
+   * @param plan          The training plan.
+   * @param weight        The current weight in kilograms.
+   * @param coachingHours The private coaching hours per week.
+   * @param competitions  The number of competitions entered this month.
+   * @return true if every rule holds, false otherwise.
+   */
+  public boolean isValid(
+    TrainingPlan plan,
+    int weight,
+    int coachingHours,
+    int competitions
+  ) {
+    int slot = slot(plan, Field.WEIGHT); // Coaching hours and competitions follow
+    return (
+      weight >= min[slot] &&
+      weight <= max[slot] &&
+      coachingHours >= min[slot + 1] &&
+      coachingHours <= max[slot + 1] &&
+      competitions >= min[slot + 2] &&
+      competitions <= max[slot + 2]
+    );
+  }
+
+  /**
+   * Lists every rule an athlete's details break.
+   *
+   * @param plan          The training plan.
+   * @param weight        The current weight in kilograms.
+   * @param coachingHours The private coaching hours per week.
+   * @param competitions  The number of competitions entered this month.
+   * @return The broken rules, in key order; empty if the details are valid.
+   */
+  public List<Rule> violations(
+    TrainingPlan plan,
+    int weight,
+    int coachingHours,
+    int competitions
+  ) {
+    if (isValid(plan, weight, coachingHours, competitions)) {
+      return List.of();
+    }
+    List<Rule> broken = new ArrayList<>(2);
+    for (Rule rule : rulesByPlan[plan.ordinal()]) {
+      int value = switch (rule.field()) {
+        case WEIGHT -> weight;
+        case COACHING_HOURS -> coachingHours;
+        case COMPETITIONS -> competitions;
+      };
+      if (!rule.allows(value)) {
+        broken.add(rule);
+      }
+    }
+    return broken;
+  }
+
+  /**
+   * Checks every athlete of a roster, in parallel blocks on the common
+   * fork/join pool.
+   *
+   * @param roster The roster to check.
+   * @return The athletes breaking at least one rule, in id order.
+   */
+  public List<Violation> validate(ColumnarRoster roster) {
+    int count = roster.size();
+    int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    return IntStream
+      .range(0, blocks)
+      .parallel()
+      .mapToObj(block -> {
+        List<Violation> found = new ArrayList<>();
+        int end = Math.min(count, (block + 1) * BLOCK_SIZE);
+        for (int id = block * BLOCK_SIZE; id < end; id++) {
+          List<Rule> broken = violations(
+            roster.getTrainingPlan(id),
+            roster.getCurrentWeight(id),
+            roster.getPrivateCoachingHours(id),
+            roster.getCompetitionsEntered(id)
+          );
+          if (!broken.isEmpty()) {
+            found.add(new Violation(id, broken));
+          }
+        }
+        return found;
+      })
+      .flatMap(List::stream)
+      .toList();
+  }
+
+  /**
+   * Parses rules in the properties format described above.
+   */
+  static EligibilityRules parse(Reader reader) throws IOException {
+    Properties properties = new Properties();
+    properties.load(reader);
+    List<Rule> rules = new ArrayList<>();
+    for (var entry : new TreeMap<>(properties).entrySet()) {
+      rules.add(Rule.parse((String) entry.getKey(), (String) entry.getValue()));
+    }
+    return new EligibilityRules(rules);
+  }
+
+  private static int slot(TrainingPlan plan, Field field) {
+    return plan.ordinal() * FIELDS.length + field.ordinal();
+  }
+
+  private static EligibilityRules loadOrDefault(Path path) {
+    if (Files.exists(path)) {
+      try {
+        return load(path);
+      } catch (IOException | IllegalArgumentException e) {
+        System.err.println("Error loading rules from " + path + ": " + e.getMessage());
+      }
+    }
+    try {
+      return parse(new StringReader(DEFAULT_RULES));
+    } catch (IOException e) {
+      throw new IllegalStateException(e); // Cannot happen with a string
+    }
+  }
+
+  /**
+   * One compiled rule: the values of a field allowed for some plans.
+   *
+   * @param name    The key of the rule.
+   * @param field   The field the rule constrains.
+   * @param min     The lowest allowed value.
+   * @param max     The highest allowed value.
+   * @param plans   The plans the rule applies to, as a bit per plan ordinal.
+   * @param message The message shown when the rule is broken.
+   */
+  record Rule(
+    String name,
+    Field field,
+    int min,
+    int max,
+    int plans,
+    String message
+  ) {
+    /**
+     * Parses a rule of the form
+     * "field op value [value] [when plan Plan,...] [| message]".
+     *
+     * @param name The key of the rule.
+     * @param text The rule.
+     * @return The compiled rule.
+     * @throws IllegalArgumentException if the rule cannot be parsed.
+     */
+    static Rule parse(String name, String text) {
+      String message = null;
+      int bar = text.indexOf('|');
+      if (bar >= 0) {
+        message = text.substring(bar + 1).trim();
+        text = text.substring(0, bar);
+      }
+      String[] words = text.trim().split("\\s+");
+      try {
+        Field field = Field.of(words[0]);
+        int next = 3;
+        int value = Integer.parseInt(words[2]);
+        int min = Integer.MIN_VALUE;
+        int max = Integer.MAX_VALUE;
+        switch (words[1]) {
+          case "<" -> max = value - 1;
+          case "<=" -> max = value;
+          case ">" -> min = value + 1;
+          case ">=" -> min = value;
+          case "=", "==" -> min = max = value;
+          case "between" -> {
+            min = value;
+            max = Integer.parseInt(words[next++]);
+          }
+          default -> throw new IllegalArgumentException(
+            "Unknown comparison " + words[1]
+          );
+        }
+        int plans = (1 << PLANS.length) - 1;
+        if (next < words.length) {
+          if (
+            words.length != next + 3 ||
+            !words[next].equals("when") ||
+            !words[next + 1].equals("plan")
+          ) {
+            throw new IllegalArgumentException("Expected 'when plan ...'");
+          }
+          plans = 0;
+          for (String plan : words[next + 2].split(",")) {
+            plans |= 1 << TrainingPlan.getTrainingPlanByName(plan).ordinal();
+          }
+        }
+        if (message == null) {
+          message = text.trim();
+        }
+        return new Rule(name, field, min, max, plans, message);
+      } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid rule " + name + ": " + text);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+          "Invalid rule " + name + ": " + e.getMessage()
+        );
+      }
+    }
+
+    /**
+     * Checks whether the rule applies to athletes on a plan.
+     *
+     * @param plan The training plan.
+     * @return true if the rule applies, false otherwise.
+     */
+    public boolean appliesTo(TrainingPlan plan) {
+      return (plans & (1 << plan.ordinal())) != 0;
+    }
+
+    /**
+     * Checks whether a value of the rule's field is allowed.
+     *
+     * @param value The value.
+     * @return true if the value is allowed, false otherwise.
+     */
+    public boolean allows(int value) {
+      return value >= min && value <= max;
+    }
+  }
+
+  /**
+   * An athlete breaking rules.
+   *
+   * @param id    The id of the athlete.
+   * @param rules The rules broken, in key order.
+   */
+  record Violation(int id, List<Rule> rules) {}
+}
@@ -0,0 +1,287 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Monthly fee table, in whole cents, for every combination of training plan,
+ * competitions entered (0 to 3) and private coaching hours (0 to 5).
+ *
+ * The table is built once from the plan fees and the competition and
+ * coaching rates, so pricing an athlete is a single array lookup. The rates
+ * are read from fees.properties when it exists:
+ *
+ * <pre>
+ * competition.fee=22.00
+ * coaching.hourly.rate=9.00
+ * </pre>
+ *
+ * and {@link #watch} swaps in a new table whenever the file changes.
+ */
+final class FeeSchedule {
+
+  static final Path DEFAULT_PATH = Path.of("fees.properties");
+  static final long DEFAULT_COMPETITION_FEE_CENTS = 2200;
+  static final long DEFAULT_COACHING_RATE_CENTS = 900;
+  static final int MAX_COMPETITIONS = 3;
+
+  private static final TrainingPlan[] PLANS = TrainingPlan.values();
+  private static final int HOURS = CostCalculator.MAX_COACHING_HOURS + 1;
+  private static final int COMPETITIONS = MAX_COMPETITIONS + 1;
+
+  private static volatile FeeSchedule current = loadOrDefault(DEFAULT_PATH);
+
+  private final long competitionFeeCents; // Fee per competition entered
+  private final long coachingRateCents; // Fee per hour of private coaching
+  private final long[] planCents; // Monthly plan cost by plan ordinal
+  private final long[] totalCents; // Monthly total by [plan][competitions][hours]
+
+  /**
+   * Builds the fee table for the given rates.
+   *
+   * @param competitionFeeCents The fee per competition entered, in cents.
+   * @param coachingRateCents   The fee per hour of private coaching, in cents.
+   */
+  FeeSchedule(long competitionFeeCents, long coachingRateCents) {
+    this.competitionFeeCents = competitionFeeCents;
+    this.coachingRateCents = coachingRateCents;
+    planCents = new long[PLANS.length];
+    totalCents = new long[PLANS.length * COMPETITIONS * HOURS];
+    for (TrainingPlan plan : PLANS) {
+      planCents[plan.ordinal()] =
+        Math.round(plan.getWeeklyFee() * 100) * CostCalculator.WEEKS_PER_MONTH;
+      for (int competitions = 0; competitions < COMPETITIONS; competitions++) {
+        for (int hours = 0; hours < HOURS; hours++) {
+          totalCents[slot(plan, competitions, hours)] =
+            planCents[plan.ordinal()] +
+            competitionsCents(competitions) +
+            coachingCents(hours);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the fee table in use.
+   *
+   * @return The current fee table.
+   */
+  public static FeeSchedule current() {
+    return current;
+  }
+
+  /**
+   * Reads the rates from a properties file, falling back to the defaults for
+   * missing keys.
+   *
+   * @param path The properties file.
+   * @return The fee table for the rates in the file.
+   * @throws IOException if the file cannot be read.
+   * @throws IllegalArgumentException if a rate is not a valid amount.
+   */
+  public static FeeSchedule load(Path path) throws IOException {
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(path)) {
+      properties.load(reader);
+    }
+    return new FeeSchedule(
+      parseCents(properties, "competition.fee", DEFAULT_COMPETITION_FEE_CENTS),
+      parseCents(properties, "coaching.hourly.rate", DEFAULT_COACHING_RATE_CENTS)
+    );
+  }
+
+  /**
+   * Reloads the fee table from a properties file. The table in use is kept
+   * if the file cannot be read or holds an invalid rate.
+   *
+   * @param path The properties file.
+   * @return true if the new rates are now in use, false otherwise.
+   */
+  public static boolean reload(Path path) {
+    try {
+      current = load(path);
+      return true;
+    } catch (IOException | IllegalArgumentException | ArithmeticException e) {
+      System.err.println("Error loading fees from " + path + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Starts a daemon thread that reloads the fee table whenever the
+   * properties file is created or modified.
+   *
+   * @param path The properties file to watch.
+   * @return The watching thread.
+   * @throws IOException if the directory cannot be watched.
+   */
+  public static Thread watch(Path path) throws IOException {
+    return FileWatcher.watch(path, "fee-schedule-watcher", FeeSchedule::reload);
+  }
+
+
+  /**
+   * Returns the fee per competition entered.
+   *
+   * @return The fee in cents.
+   */
+  public long getCompetitionFeeCents() {
+    return competitionFeeCents;
+  }
+
+  /**
+   * Returns the fee per hour of private coaching.
+   *
+   * @return The fee in cents.
+   */
+  public long getCoachingRateCents() {
+    return coachingRateCents;
+  }
+
+  /**
+   * Returns the monthly cost of a training plan.
+   *
+   * @param plan The training plan.
+   * @return The cost in cents.
+   */
+  public long trainingPlanCents(TrainingPlan plan) {
+    return planCents[plan.ordinal()];
+  }
+
+  /**
+   * Returns the cost of the competitions entered in a month.
+   *
+   * @param competitionsEntered The number of competitions entered.
+   * @return The cost in cents.
+   */
+  public long competitionsCents(int competitionsEntered) {
+    return competitionsEntered * competitionFeeCents;
+  }
+
+  /**
+   * Returns the monthly cost of private coaching, billing at most five hours a week.
+   *
+   * @param hoursPerWeek The private coaching hours per week.
+   * @return The cost in cents.
+   */
+  public long coachingCents(int hoursPerWeek) {
+    return (
+      Math.min(hoursPerWeek, CostCalculator.MAX_COACHING_HOURS) *
+      coachingRateCents *
+      CostCalculator.WEEKS_PER_MONTH
+    );
+  }
+
+  /**
+   * Returns the total monthly cost for a combination of plan, competitions
+   * and coaching hours.
+   *
+   * @param plan                The training plan.
+   * @param competitionsEntered The number of competitions entered.
+   * @param hoursPerWeek        The private coaching hours per week.
+   * @return The total in cents.
+   */
+  public long totalCents(
+    TrainingPlan plan,
+    int competitionsEntered,
+    int hoursPerWeek
+  ) {
+    int hours = Math.min(hoursPerWeek, CostCalculator.MAX_COACHING_HOURS);
+    if (
+      competitionsEntered < 0 || competitionsEntered > MAX_COMPETITIONS || hours < 0
+    ) { // Outside the table, price item by item
+      return (
+        planCents[plan.ordinal()] +
+        competitionsCents(competitionsEntered) +
+        coachingCents(hours)
+      );
+    }
+    return totalCents[slot(plan, competitionsEntered, hours)];
+  }
+
+  /**
+   * Appends an amount in cents with two decimal places, e.g. 292.00.
+   *
+   * @param out   The builder to append to.
+   * @param cents The amount in cents.
+   * @return The builder.
+   */
+  public static StringBuilder appendCents(StringBuilder out, long cents) {
+    if (cents < 0) {
+      out.append('-');
+      cents = -cents;
+    }
+    long fraction = cents % 100;
+    out.append(cents / 100).append('.');
+    if (fraction < 10) {
+      out.append('0');
+    }
+    return out.append(fraction);
+  }
+
+  /**
+   * Writes an amount in cents with two decimal places as ASCII into a
+   * caller-owned buffer, without allocating.
+   *
+   * @param cents  The amount in cents.
+   * @param buffer The buffer to write into.
+   * @param offset The index of the first byte to write.
+   * @return The index just past the last byte written.
+   */
+  public static int formatCents(long cents, byte[] buffer, int offset) {
+    if (cents < 0) {
+      buffer[offset++] = '-';
+      cents = -cents;
+    }
+    long whole = cents / 100;
+    int digits = 1;
+    for (long rest = whole / 10; rest > 0; rest /= 10) {
+      digits++;
+    }
+    int end = offset + digits;
+    for (int i = end - 1; i >= offset; i--) {
+      buffer[i] = (byte) ('0' + whole % 10);
+      whole /= 10;
+    }
+    buffer[end] = '.';
+    buffer[end + 1] = (byte) ('0' + (cents % 100) / 10);
+    buffer[end + 2] = (byte) ('0' + cents % 10);
+    return end + 3;
+  }
+
+  private static int slot(TrainingPlan plan, int competitions, int hours) {
+    return (plan.ordinal() * COMPETITIONS + competitions) * HOURS + hours;
+  }
+
+  private static long parseCents(
+    Properties properties,
+    String key,
+    long defaultCents
+  ) {
+    String value = properties.getProperty(key);
+    if (value == null) {
+      return defaultCents;
+    }
+    long cents = new BigDecimal(value.trim()).movePointRight(2).longValueExact();
+    if (cents < 0) {
+      throw new IllegalArgumentException(key + " must not be negative");
+    }
+    return cents;
+  }
+
+  private static FeeSchedule loadOrDefault(Path path) {
+    if (Files.exists(path)) {
+      try {
+        return load(path);
+      } catch (IOException | IllegalArgumentException | ArithmeticException e) {
+        System.err.println("Error loading fees from " + path + ": " + e.getMessage());
+      }
+    }
+    return new FeeSchedule(
+      DEFAULT_COMPETITION_FEE_CENTS,
+      DEFAULT_COACHING_RATE_CENTS
+    );
+  }
+}
@@ -0,0 +1,61 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.function.Consumer;
+
+/**
+ * Watches settings files, such as the fee and eligibility rule files, so
+ * that changes to them are picked up without a restart.
+ */
+abstract class FileWatcher {
+
+  /**
+   * Starts a daemon thread that passes the file to an action whenever it is
+   * created or modified.
+   *
+   * @param path     The file to watch.
+   * @param name     The name of the watching thread.
+   * @param onChange Receives the absolute path of the file after each change.
+   * @return The watching thread.
+   * @throws IOException if the directory cannot be watched.
+   */
+  static Thread watch(Path path, String name, Consumer<Path> onChange)
+    throws IOException {
+    Path file = path.toAbsolutePath();
+    WatchService watcher = file.getFileSystem().newWatchService();
+    file
+      .getParent()
+      .register(
+        watcher,
+        StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY
+      );
+    Thread thread = new Thread(
+      () -> {
+        try (watcher) {
+          while (true) {
+            WatchKey key = watcher.take();
+            for (WatchEvent<?> event : key.pollEvents()) {
+              if (file.getFileName().equals(event.context())) {
+                onChange.accept(file);
+              }
+            }
+            key.reset();
+          }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+          // Stop watching
+        } catch (IOException e) {
+          System.err.println("Error watching " + file + ": " + e.getMessage());
+        }
+      },
+      name
+    );
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+}
@@ -0,0 +1,85 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Growable list of athlete ids kept in id order, shared by the indexes that
+ * map one key to many athletes. Each list has its own lock, so changes
+ * under different keys never wait for each other.
+ */
+final class IdList {
+
+  private int[] ids;
+  private int size;
+
+  /**
+   * Creates an empty list.
+   */
+  IdList() {
+    this(new int[1], 0);
+  }
+
+  /**
+   * Creates a list holding ids already in ascending order.
+   *
+   * @param ids  The array to take over, not copied.
+   * @param size The number of ids at the start of the array.
+   */
+  IdList(int[] ids, int size) {
+    this.ids = ids.length == 0 ? new int[1] : ids;
+    this.size = size;
+  }
+
+  /**
+   * Adds an id to the list.
+   *
+   * @param id The id to add.
+   */
+  synchronized void add(int id) {
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+    }
+    int i = size++;
+    while (i > 0 && ids[i - 1] > id) { // Concurrent registrations may arrive out of order
+      ids[i] = ids[i - 1];
+      i--;
+    }
+    ids[i] = id;
+  }
+
+  /**
+   * Removes an id from the list.
+   *
+   * @param id The id to remove.
+   * @return Whether the id was in the list.
+   */
+  synchronized boolean remove(int id) {
+    int i = Arrays.binarySearch(ids, 0, size, id);
+    if (i < 0) {
+      return false;
+    }
+    System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+    size--;
+    return true;
+  }
+
+  /**
+   * Sets the bit of every id in the list below a limit.
+   *
+   * @param bits  The bitmap to set the bits in.
+   * @param limit The first id left out.
+   */
+  synchronized void addTo(BitSet bits, int limit) {
+    for (int i = 0; i < size && ids[i] < limit; i++) {
+      bits.set(ids[i]);
+    }
+  }
+
+  /**
+   * Returns a copy of the ids.
+   *
+   * @return The ids in ascending order.
+   */
+  synchronized int[] toArray() {
+    return Arrays.copyOf(ids, size);
+  }
+}
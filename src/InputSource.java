@@ -0,0 +1,49 @@
+import java.io.PrintStream;
+import java.util.Scanner;
+
+/**
+ * Where the answers to a registration's prompts come from, and where the
+ * prompts themselves go.
+ *
+ * At the console the answers are typed by a person and the prompts are
+ * printed to standard output. A recorded transcript instead hands out its
+ * lines one after another (see {@link ReplayDriver}), so a session can run
+ * as fast as the prompts can be processed, and several sessions can run at
+ * once, each with its own source.
+ */
+interface InputSource {
+  /**
+   * Reads the next answer.
+   *
+   * @return The next line of input, without its line terminator.
+   * @throws java.util.NoSuchElementException if there is no more input.
+   */
+  String nextLine();
+
+  /**
+   * Returns the stream prompts and messages are printed to.
+   *
+   * @return The output stream.
+   */
+  PrintStream out();
+
+  /**
+   * Returns a source reading from a scanner and printing to standard output.
+   *
+   * @param scanner The scanner reading the console.
+   * @return The source.
+   */
+  static InputSource console(Scanner scanner) {
+    return new InputSource() {
+      @Override
+      public String nextLine() {
+        return scanner.nextLine();
+      }
+
+      @Override
+      public PrintStream out() {
+        return System.out;
+      }
+    };
+  }
+}
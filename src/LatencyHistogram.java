@@ -0,0 +1,174 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of the latencies of one kind of operation, in the
+ * style of an HDR histogram: every power of two of nanoseconds is split into
+ * 32 buckets of equal width, so any recorded latency is known to within about
+ * 3%, from a few nanoseconds to over two hours, in a fixed 10 KB of counts.
+ *
+ * Recording a latency is a single atomic increment of its bucket, cheap
+ * enough to leave on for every call; threads only contend when they record
+ * into the same bucket at the same moment. Readers take a {@link Snapshot}
+ * of the counts and work out percentiles from it.
+ */
+class LatencyHistogram implements LatencyMXBean {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 42; // Latencies from 2^43 ns, about 2.4 hours, share the last bucket
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  private final String name;
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final long createdNanos = System.nanoTime();
+
+  /**
+   * Creates an empty histogram.
+   *
+   * @param name The name of the operation, e.g. "register".
+   */
+  LatencyHistogram(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Records one latency.
+   *
+   * @param nanos The latency in nanoseconds.
+   */
+  public void record(long nanos) {
+    counts.incrementAndGet(bucketOf(nanos));
+  }
+
+  /**
+   * Records the latency of an operation that started at the given time.
+   *
+   * @param startNanos The {@link System#nanoTime()} at the start of the operation.
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Copies the current counts.
+   *
+   * @return The counts recorded so far.
+   */
+  public Snapshot snapshot() {
+    long[] copy = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = counts.get(i);
+      count += copy[i];
+    }
+    return new Snapshot(copy, count);
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getCount() {
+    return snapshot().count();
+  }
+
+  @Override
+  public double getMeanRatePerSecond() {
+    double seconds = (System.nanoTime() - createdNanos) / 1e9;
+    return seconds > 0 ? getCount() / seconds : 0;
+  }
+
+  @Override
+  public double getP50Micros() {
+    return snapshot().percentileMicros(50);
+  }
+
+  @Override
+  public double getP99Micros() {
+    return snapshot().percentileMicros(99);
+  }
+
+  @Override
+  public double getP999Micros() {
+    return snapshot().percentileMicros(99.9);
+  }
+
+  @Override
+  public double getMaxMicros() {
+    return snapshot().percentileMicros(100);
+  }
+
+  /**
+   * Returns the bucket a latency is counted in.
+   */
+  static int bucketOf(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) Math.max(nanos, 0); // One bucket per nanosecond below 32
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) (nanos >>> shift) - SUB_BUCKETS;
+  }
+
+  /**
+   * Returns the highest latency counted in a bucket.
+   */
+  static long highestIn(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+    long subBucket = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  /**
+   * The counts of a histogram at one moment.
+   *
+   * @param counts The count of each bucket.
+   * @param count  The total count.
+   */
+  record Snapshot(long[] counts, long count) {
+    /**
+     * Returns the counts recorded since an earlier snapshot of the same
+     * histogram.
+     *
+     * @param earlier The earlier snapshot.
+     * @return The difference between the two snapshots.
+     */
+    public Snapshot minus(Snapshot earlier) {
+      long[] difference = new long[BUCKETS];
+      for (int i = 0; i < BUCKETS; i++) {
+        difference[i] = counts[i] - earlier.counts[i];
+      }
+      return new Snapshot(difference, count - earlier.count);
+    }
+
+    /**
+     * Returns the latency at a percentile, rounded up to the top of its
+     * bucket.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The latency in microseconds, 0 if nothing was recorded.
+     */
+    public double percentileMicros(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count)); // Nearest rank
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return highestIn(i) / 1000.0;
+        }
+      }
+      return highestIn(BUCKETS - 1) / 1000.0;
+    }
+  }
+}
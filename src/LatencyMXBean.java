@@ -0,0 +1,55 @@
+/**
+ * Management view of the latencies of one kind of operation, registered
+ * with the platform MBean server by {@link Metrics#registerMBeans()}.
+ * Percentiles cover every call since the program started.
+ */
+public interface LatencyMXBean {
+  /**
+   * Returns the name of the operation.
+   *
+   * @return The operation's name, e.g. "register".
+   */
+  String getName();
+
+  /**
+   * Returns the number of calls recorded.
+   *
+   * @return The number of calls since the program started.
+   */
+  long getCount();
+
+  /**
+   * Returns the average number of calls per second.
+   *
+   * @return The calls per second since the program started.
+   */
+  double getMeanRatePerSecond();
+
+  /**
+   * Returns the median latency.
+   *
+   * @return The 50th percentile in microseconds.
+   */
+  double getP50Micros();
+
+  /**
+   * Returns the 99th percentile latency.
+   *
+   * @return The 99th percentile in microseconds.
+   */
+  double getP99Micros();
+
+  /**
+   * Returns the 99.9th percentile latency.
+   *
+   * @return The 99.9th percentile in microseconds.
+   */
+  double getP999Micros();
+
+  /**
+   * Returns the highest latency.
+   *
+   * @return The highest latency in microseconds.
+   */
+  double getMaxMicros();
+}
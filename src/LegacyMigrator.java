@@ -0,0 +1,157 @@
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves athletes out of the athletes.dat files written by earlier versions
+ * of the program into the registry.
+ *
+ * Those files hold Java serialization streams. Saving the whole roster wrote
+ * one stream with an ArrayList, while registering a single athlete appended
+ * a new stream, with its own header, holding one Athlete. A file is
+ * therefore read segment by segment: objects are read from a stream until
+ * the next stream header, where a new stream is started. A segment cut short
+ * by a crash ends the migration with the athletes read so far.
+ *
+ * Only the classes such files can contain may be deserialized.
+ */
+abstract class LegacyMigrator {
+
+  static final Path DEFAULT_PATH = Path.of("athletes.dat");
+
+  private static final int BATCH_SIZE = 16384; // Athletes registered per log write
+  private static final byte[] STREAM_HEADER = { (byte) 0xAC, (byte) 0xED, 0x00, 0x05 };
+  private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+    "Athlete;TrainingPlan;WeightCategory;java.lang.Enum;java.util.ArrayList;java.lang.Object;maxdepth=4;!*"
+  );
+
+  /**
+   * Registers every valid athlete found in a legacy file.
+   *
+   * @param registry The registry to add the athletes to.
+   * @param file     The legacy athletes.dat file.
+   * @return What was found in the file.
+   * @throws IOException if the file cannot be read or the athletes cannot be stored.
+   */
+  public static MigrationResult migrate(AthleteRegistry registry, Path file)
+    throws IOException {
+    byte[] bytes = Files.readAllBytes(file);
+    List<Athlete> batch = new ArrayList<>();
+    int segments = 0;
+    int migrated = 0;
+    int skipped = 0;
+    boolean complete = true;
+    int position = 0;
+    while (position < bytes.length) {
+      if (!isStreamHeader(bytes, position)) {
+        complete = false; // Not a stream this program wrote
+        break;
+      }
+      segments++;
+      ByteArrayInputStream in = new ByteArrayInputStream(
+        bytes,
+        position,
+        bytes.length - position
+      );
+      int available = in.available();
+      try (ObjectInputStream objects = new ObjectInputStream(in)) {
+        objects.setObjectInputFilter(FILTER);
+        while (true) {
+          int next = position + available - in.available();
+          if (next == bytes.length || isStreamHeader(bytes, next)) {
+            position = next; // The segment ends here
+            break;
+          }
+          List<Athlete> found = athletesIn(objects.readObject());
+          for (Athlete athlete : found) {
+            if (isComplete(athlete)) {
+              batch.add(athlete);
+            } else {
+              skipped++;
+            }
+          }
+          if (batch.size() >= BATCH_SIZE) {
+            registry.registerAll(batch);
+            migrated += batch.size();
+            batch.clear();
+          }
+        }
+      } catch (EOFException | StreamCorruptedException | InvalidClassException e) {
+        complete = false; // Torn or foreign data: keep what was read before it
+        break;
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Unexpected class in " + file + ": " + e.getMessage());
+      }
+    }
+    if (!batch.isEmpty()) {
+      registry.registerAll(batch);
+      migrated += batch.size();
+    }
+    return new MigrationResult(segments, migrated, skipped, complete);
+  }
+
+  private static List<Athlete> athletesIn(Object object)
+    throws StreamCorruptedException {
+    if (object instanceof Athlete athlete) {
+      return List.of(athlete);
+    }
+    if (object instanceof List<?> list) {
+      List<Athlete> athletes = new ArrayList<>(list.size());
+      for (Object element : list) {
+        if (!(element instanceof Athlete athlete)) {
+          throw new StreamCorruptedException("Unexpected list element " + element);
+        }
+        athletes.add(athlete);
+      }
+      return athletes;
+    }
+    throw new StreamCorruptedException("Unexpected object " + object);
+  }
+
+  /**
+   * Checks that an athlete was saved with every detail, which the old
+   * program did not guarantee.
+   */
+  private static boolean isComplete(Athlete athlete) {
+    return (
+      athlete.getName() != null &&
+      athlete.getTrainingPlan() != null &&
+      athlete.getWeightCategory() != null
+    );
+  }
+
+  private static boolean isStreamHeader(byte[] bytes, int position) {
+    if (position + STREAM_HEADER.length > bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < STREAM_HEADER.length; i++) {
+      if (bytes[position + i] != STREAM_HEADER[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Outcome of a migration.
+   *
+   * @param segments The number of serialization streams found in the file.
+   * @param migrated The number of athletes registered.
+   * @param skipped  The number of athletes left out for missing details.
+   * @param complete Whether the whole file could be read.
+   */
+  record MigrationResult(
+    int segments,
+    int migrated,
+    int skipped,
+    boolean complete
+  ) {}
+}
@@ -0,0 +1,248 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of the operations on the hot paths:
+ * registrations and weight changes, the log appends, syncs and checkpoints
+ * behind them, cost calculations, and lookups by name, similar name and
+ * query, as well as the file traffic and the hits and misses of the athlete
+ * caches, which count the lookups by id.
+ *
+ * Everything is recorded with lock-free counters and is always on. The
+ * figures can be read over JMX, under the "NorthSussexJudo" domain, and
+ * printed as a text table at a fixed interval with {@link #startDump}.
+ */
+abstract class Metrics {
+
+  static final String DOMAIN = "NorthSussexJudo";
+
+  static final LatencyHistogram OPEN = new LatencyHistogram("open");
+  static final LatencyHistogram REGISTER = new LatencyHistogram("register");
+  static final LatencyHistogram REGISTER_BATCH = new LatencyHistogram("register.batch");
+  static final LatencyHistogram CHANGE_WEIGHT = new LatencyHistogram("weight.change");
+  static final LatencyHistogram LOG_APPEND = new LatencyHistogram("log.append");
+  static final LatencyHistogram SYNC = new LatencyHistogram("sync"); // Counts every sync of every file
+  static final LatencyHistogram CHECKPOINT = new LatencyHistogram("checkpoint");
+  static final LatencyHistogram COST = new LatencyHistogram("cost");
+  static final LatencyHistogram LOOKUP_NAME = new LatencyHistogram("lookup.name");
+  static final LatencyHistogram LOOKUP_PREFIX = new LatencyHistogram("lookup.prefix");
+  static final LatencyHistogram LOOKUP_SIMILAR = new LatencyHistogram("lookup.similar");
+  static final LatencyHistogram LOOKUP_QUERY = new LatencyHistogram("lookup.query");
+  static final List<LatencyHistogram> OPERATIONS = List.of(
+    OPEN,
+    REGISTER,
+    REGISTER_BATCH,
+    CHANGE_WEIGHT,
+    LOG_APPEND,
+    SYNC,
+    CHECKPOINT,
+    COST,
+    LOOKUP_NAME,
+    LOOKUP_PREFIX,
+    LOOKUP_SIMILAR,
+    LOOKUP_QUERY
+  );
+
+  static final LongAdder BYTES_WRITTEN = new LongAdder();
+  static final LongAdder BYTES_READ = new LongAdder();
+  static final LongAdder CACHE_HITS = new LongAdder();
+  static final LongAdder CACHE_MISSES = new LongAdder();
+
+  private static final StorageMXBean STORAGE = new StorageMXBean() {
+    @Override
+    public long getBytesWritten() {
+      return BYTES_WRITTEN.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+      return BYTES_READ.sum();
+    }
+
+    @Override
+    public long getSyncs() {
+      return SYNC.getCount();
+    }
+  };
+
+  private static final CacheMXBean CACHE = new CacheMXBean() {
+    @Override
+    public long getHits() {
+      return CACHE_HITS.sum();
+    }
+
+    @Override
+    public long getMisses() {
+      return CACHE_MISSES.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+      long hits = CACHE_HITS.sum();
+      long lookups = hits + CACHE_MISSES.sum();
+      return lookups > 0 ? (double) hits / lookups : 0;
+    }
+  };
+
+  /**
+   * Registers the histograms, storage counters and cache counters with the
+   * platform MBean server, unless they already are.
+   *
+   * @throws JMException if an MBean cannot be registered.
+   */
+  static synchronized void registerMBeans() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for (LatencyHistogram operation : OPERATIONS) {
+      ObjectName name = new ObjectName(
+        DOMAIN + ":type=Latency,name=" + operation.getName()
+      );
+      if (!server.isRegistered(name)) {
+        server.registerMBean(operation, name);
+      }
+    }
+    ObjectName storage = new ObjectName(DOMAIN + ":type=Storage");
+    if (!server.isRegistered(storage)) {
+      server.registerMBean(STORAGE, storage);
+    }
+    ObjectName cache = new ObjectName(DOMAIN + ":type=Cache");
+    if (!server.isRegistered(cache)) {
+      server.registerMBean(CACHE, cache);
+    }
+  }
+
+  /**
+   * Prints the operations of each interval, with their rate and latency
+   * percentiles, and the file traffic, every given number of seconds on a
+   * daemon thread.
+   *
+   * @param out             The stream to print to.
+   * @param intervalSeconds The length of an interval in seconds.
+   * @throws IllegalArgumentException if the interval is not positive.
+   */
+  static void startDump(PrintStream out, long intervalSeconds) {
+    if (intervalSeconds <= 0) {
+      throw new IllegalArgumentException("The metrics interval must be positive");
+    }
+    ScheduledExecutorService dumper =
+      Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "metrics-dump");
+        thread.setDaemon(true);
+        return thread;
+      });
+    Interval interval = new Interval();
+    dumper.scheduleAtFixedRate(
+      () -> out.print(interval.next()),
+      intervalSeconds,
+      intervalSeconds,
+      TimeUnit.SECONDS
+    );
+  }
+
+  /**
+   * Formats what happened since the previous call as a table, one row per
+   * operation that ran.
+   */
+  private static final class Interval {
+
+    private final LatencyHistogram.Snapshot[] previous =
+      new LatencyHistogram.Snapshot[OPERATIONS.size()];
+    private long previousNanos = System.nanoTime();
+    private long previousWritten;
+    private long previousRead;
+    private long previousHits;
+    private long previousMisses;
+
+    private Interval() {
+      for (int i = 0; i < previous.length; i++) {
+        previous[i] = OPERATIONS.get(i).snapshot();
+      }
+      previousWritten = BYTES_WRITTEN.sum();
+      previousRead = BYTES_READ.sum();
+      previousHits = CACHE_HITS.sum();
+      previousMisses = CACHE_MISSES.sum();
+    }
+
+    String next() {
+      long now = System.nanoTime();
+      double seconds = Math.max(1, now - previousNanos) / 1e9;
+      previousNanos = now;
+      StringBuilder report = new StringBuilder(1024);
+      report.append("Metrics at ");
+      report.append(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+      report.append(String.format(Locale.ROOT, " over %.0f s%n", seconds));
+      report.append(
+        String.format(
+          Locale.ROOT,
+          "%-16s %10s %10s %10s %10s %10s%n",
+          "operation",
+          "ops/s",
+          "p50 us",
+          "p99 us",
+          "p99.9 us",
+          "max us"
+        )
+      );
+      for (int i = 0; i < previous.length; i++) {
+        LatencyHistogram.Snapshot current = OPERATIONS.get(i).snapshot();
+        LatencyHistogram.Snapshot delta = current.minus(previous[i]);
+        previous[i] = current;
+        if (delta.count() == 0) {
+          continue; // Keep the table to what ran
+        }
+        report.append(
+          String.format(
+            Locale.ROOT,
+            "%-16s %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+            OPERATIONS.get(i).getName(),
+            delta.count() / seconds,
+            delta.percentileMicros(50),
+            delta.percentileMicros(99),
+            delta.percentileMicros(99.9),
+            delta.percentileMicros(100)
+          )
+        );
+      }
+      long written = BYTES_WRITTEN.sum();
+      long read = BYTES_READ.sum();
+      report.append(
+        String.format(
+          Locale.ROOT,
+          "bytes written %d (%+d), bytes read %d (%+d), syncs %d%n",
+          written,
+          written - previousWritten,
+          read,
+          read - previousRead,
+          SYNC.getCount()
+        )
+      );
+      long hits = CACHE_HITS.sum();
+      long misses = CACHE_MISSES.sum();
+      report.append(
+        String.format(
+          Locale.ROOT,
+          "cache hits %d (%+d), misses %d (%+d)%n",
+          hits,
+          hits - previousHits,
+          misses,
+          misses - previousMisses
+        )
+      );
+      previousWritten = written;
+      previousRead = read;
+      previousHits = hits;
+      previousMisses = misses;
+      return report.toString();
+    }
+  }
+}
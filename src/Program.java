@@ -1,41 +1,73 @@
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
 
 /**
  * This class represents the main program for athlete registration and information management.
  */
 public class Program {
 
+  private static final Path STORE_PATH = Path.of("athletes.db"); // The athlete store
+  private static final int MAX_SUGGESTIONS = 10; // Names suggested for an unknown athlete
+  private static final int PAGE_SIZE = 20; // Athletes shown per page
+
   /**
    * The main entry point for the program.
    *
    * @param args The command line arguments.
    */
   public static void main(String[] args) {
+    try {
+      FeeSchedule.watch(FeeSchedule.DEFAULT_PATH); // Pick up fee changes without a restart
+    } catch (IOException e) {
+      System.err.println("Error watching fees: " + e.getMessage());
+    }
+    try {
+      EligibilityRules.watch(EligibilityRules.DEFAULT_PATH); // Pick up rule changes without a restart
+    } catch (IOException e) {
+      System.err.println("Error watching rules: " + e.getMessage());
+    }
+    try {
+      Metrics.registerMBeans(); // Latencies and file traffic over JMX
+    } catch (JMException e) {
+      System.err.println("Error registering metrics: " + e.getMessage());
+    }
+    if (args.length > 0) {
+      runCommand(args);
+      return;
+    }
     Scanner scanner = new Scanner(System.in);
+    InputSource input = InputSource.console(scanner); // Shared by every prompt
     UIManager.displayWelcomeMessage();
-    List<Athlete> athletes = new ArrayList<>();
+    AthleteRegistry registry;
+    try {
+      registry = AthleteRegistry.open(STORE_PATH);
+    } catch (IOException e) {
+      System.err.println("Error opening athlete store: " + e.getMessage());
+      return;
+    }
     do { // Register athletes
       Athlete athlete = new Athlete();
-      athlete.register();
-      athletes.add(athlete);
+      athlete.register(input);
+      saveAthleteToFile(registry, athlete); // Append the athlete to the store
     } while (
-      UIManager.confirm("Do you want to register another athlete?", scanner)
+      UIManager.confirm("Do you want to register another athlete?", input)
     );
-    saveAthletesToFile(athletes); // Save athletes' information to file
     System.out.println("Registration complete. Thank you!");
     System.out.println();
     // Ask user if they want to view athlete information
     if (
       UIManager.confirm(
         "Do you want to view registered athletes' information?",
-        scanner
+        input
       )
     ) {
       System.out.println();
@@ -46,106 +78,456 @@ public class Program {
         System.out.println("2. Show individual athlete information");
         System.out.println("0. Exit");
         System.out.println();
-        choice = UIManager.promptInt("Enter choice: ", scanner);
+        choice = UIManager.promptInt("Enter choice: ", input);
         System.out.println();
 
         switch (choice) {
-          case 1 -> showAllAthletesInformation();
-          case 2 -> showIndividualAthleteInformation(athletes, scanner);
+          case 1 -> showAllAthletesInformation(registry, input);
+          case 2 -> showIndividualAthleteInformation(registry, input);
           case 0 -> System.out.println("Exiting program.");
           default -> System.out.println("Invalid choice. Please try again.");
         }
       } while (choice != 0);
     }
+    try {
+      registry.close();
+    } catch (IOException e) {
+      System.err.println("Error closing athlete store: " + e.getMessage());
+    }
     scanner.close();
   }
 
   /**
-   * Saves the list of athletes to a file.
+   * Runs one non-interactive command given on the command line.
    *
-   * @param athletes The list of athletes to save.
+   * @param args The command and its arguments.
    */
-  private static void saveAthletesToFile(List<Athlete> athletes) {
-    try (
-      ObjectOutputStream oos = new ObjectOutputStream(
-        new FileOutputStream("athletes.dat")
-      )
+  private static void runCommand(String[] args) {
+    CountDownLatch closed = new CountDownLatch(1); // The store is closed, for the shutdown hook of serve
+    try (AthleteRegistry registry = AthleteRegistry.open(STORE_PATH)) {
+      switch (args[0]) {
+        case "import" -> {
+          if (args.length < 2) {
+            printUsage();
+            return;
+          }
+          Path file = Path.of(args[1]);
+          long start = System.nanoTime();
+          BulkImporter.ImportResult result = BulkImporter.importFile(
+            registry,
+            file
+          );
+          long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+          System.out.println(
+            "Imported " +
+            result.imported() +
+            " athlete(s) in " +
+            millis +
+            " ms, rejected " +
+            result.errors().size() +
+            " row(s)."
+          );
+          if (!result.errors().isEmpty()) {
+            Path report = Path.of(file + ".errors");
+            BulkImporter.writeErrorReport(result, report);
+            System.out.println("Rejected rows written to " + report);
+          }
+        }
+        case "bill" -> {
+          YearMonth month = args.length > 1
+            ? YearMonth.parse(args[1])
+            : YearMonth.now();
+          Path file = Path.of("invoices-" + month + ".csv");
+          long start = System.nanoTime();
+          BillingRun.Summary summary = BillingRun.run(registry, month, file);
+          long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+          System.out.println(
+            "Wrote " +
+            summary.invoices() +
+            " invoice(s) totalling $" +
+            FeeSchedule.appendCents(new StringBuilder(), summary.totalCents()) +
+            " to " +
+            file +
+            " in " +
+            millis +
+            " ms."
+          );
+        }
+        case "export" -> {
+          if (args.length < 3) {
+            printUsage();
+            return;
+          }
+          Path file = Path.of(args[2]);
+          ColumnarRoster roster = registry.getRoster();
+          long start = System.nanoTime();
+          long rows = switch (args[1]) {
+            case "roster" -> ReportExporter.exportRoster(roster, file);
+            case "invoices" -> ReportExporter.exportInvoices(roster, file);
+            case "categories" -> ReportExporter.exportCategorySummary(roster, file);
+            default -> -1;
+          };
+          if (rows < 0) {
+            printUsage();
+            return;
+          }
+          long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+          System.out.println(
+            "Exported " + rows + " row(s) to " + file + " in " + millis + " ms."
+          );
+        }
+        case "migrate" -> {
+          Path file = args.length > 1
+            ? Path.of(args[1])
+            : LegacyMigrator.DEFAULT_PATH;
+          long start = System.nanoTime();
+          LegacyMigrator.MigrationResult result = LegacyMigrator.migrate(
+            registry,
+            file
+          );
+          long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+          System.out.println(
+            "Migrated " +
+            result.migrated() +
+            " athlete(s) from " +
+            result.segments() +
+            " segment(s) of " +
+            file +
+            " in " +
+            millis +
+            " ms, skipped " +
+            result.skipped() +
+            " incomplete athlete(s)."
+          );
+          if (!result.complete()) {
+            System.out.println("The end of " + file + " was damaged and could not be read.");
+          }
+        }
+        case "draw" -> {
+          if (args.length < 3) {
+            printUsage();
+            return;
+          }
+          CompetitionDraw.Format format = CompetitionDraw.Format.valueOf(
+            args[1].toUpperCase()
+          );
+          Path file = Path.of(args[2]);
+          long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+          LocalDate day = CompetitionRules.competitionDay(YearMonth.now());
+          long start = System.nanoTime();
+          CompetitionDraw.Draw draw = CompetitionDraw.run(
+            registry,
+            day,
+            format,
+            seed
+          );
+          long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+          CompetitionDraw.write(draw, registry.getRoster(), file);
+          System.out.println(
+            "Drew " +
+            draw.entrants() +
+            " athlete(s) for " +
+            day +
+            " in " +
+            millis +
+            " ms, written to " +
+            file +
+            "."
+          );
+        }
+        case "validate" -> {
+          EligibilityRules rules = args.length > 1
+            ? EligibilityRules.load(Path.of(args[1]))
+            : EligibilityRules.current();
+          Path file = Path.of(args.length > 2 ? args[2] : "violations.csv");
+          ColumnarRoster roster = registry.getRoster();
+          long start = System.nanoTime();
+          List<EligibilityRules.Violation> violations = rules.validate(roster);
+          long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+          long rows = ReportExporter.exportViolations(roster, violations, file);
+          System.out.println(
+            "Checked " +
+            roster.size() +
+            " athlete(s) against " +
+            rules.getRules().size() +
+            " rule(s) in " +
+            millis +
+            " ms: " +
+            violations.size() +
+            " athlete(s) break " +
+            rows +
+            " rule(s), written to " +
+            file +
+            "."
+          );
+        }
+        case "replay" -> {
+          if (args.length < 2) {
+            printUsage();
+            return;
+          }
+          List<List<String>> transcripts = ReplayDriver.readTranscripts(
+            Path.of(args[1])
+          );
+          int sessions = args.length > 2
+            ? Integer.parseInt(args[2])
+            : transcripts.size();
+          int threads = args.length > 3
+            ? Integer.parseInt(args[3])
+            : Runtime.getRuntime().availableProcessors();
+          ReplayDriver.ReplayResult result;
+          if (args.length > 4) {
+            try (
+              AthleteRegistry scratch = AthleteRegistry.open(Path.of(args[4]))
+            ) {
+              result =
+                ReplayDriver.run(transcripts, sessions, threads, scratch);
+            }
+          } else {
+            result = ReplayDriver.run(transcripts, sessions, threads, null);
+          }
+          System.out.println(
+            String.format(
+              Locale.ROOT,
+              "Replayed %d session(s) on %d thread(s) in %d ms: " +
+              "%.0f sessions/s, latency p50 %.1f us, p95 %.1f us, " +
+              "p99 %.1f us, max %.1f us.",
+              result.sessions(),
+              threads,
+              Math.max(1, result.elapsedNanos() / 1_000_000),
+              result.sessionsPerSecond(),
+              result.percentileMicros(50),
+              result.percentileMicros(95),
+              result.percentileMicros(99),
+              result.percentileMicros(100)
+            )
+          );
+          if (result.failed() > 0) {
+            System.out.println(
+              result.failed() +
+              " session(s) failed, the first in transcript " +
+              result.firstError()
+            );
+          }
+        }
+        case "weigh" -> {
+          if (args.length < 3) {
+            printUsage();
+            return;
+          }
+          int id = Integer.parseInt(args[1]);
+          int weight = Integer.parseInt(args[2]);
+          WeightCategory category = args.length > 3
+            ? WeightCategory.getWeightCategoryByName(args[3])
+            : WeightClassifier.classify(weight);
+          if (category == null) {
+            category = registry.getRoster().getWeightCategory(id); // No category covers the weight
+          }
+          registry.changeWeight(id, weight, category);
+          System.out.println(registry.get(id));
+        }
+        case "recategorize" -> {
+          long start = System.nanoTime();
+          int changed = registry.recategorize();
+          long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+          System.out.println(
+            "Moved " +
+            changed +
+            " athlete(s) into the category of their weight in " +
+            millis +
+            " ms."
+          );
+        }
+        case "serve" -> {
+          int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+          if (args.length > 2) {
+            Metrics.startDump(System.out, Long.parseLong(args[2]));
+          }
+          serve(registry, port, closed);
+        }
+        default -> printUsage();
+      }
+    } catch (
+      IOException
+      | DateTimeParseException
+      | IllegalArgumentException
+      | IndexOutOfBoundsException e
     ) {
-      oos.writeObject(athletes);
-      System.out.println("Athlete(s) information saved successfully.");
-    } catch (IOException e) {
-      System.err.println(
-        "Error saving athlete(s) information: " + e.getMessage()
-      );
+      System.err.println("Error running " + args[0] + ": " + e.getMessage());
+    } finally {
+      closed.countDown();
     }
   }
 
   /**
-   * Reads the list of athletes from a file.
+   * Serves the registry over HTTP until the process is interrupted. The
+   * caller closes the registry once this returns, and then counts down the
+   * latch so the process can exit.
    *
-   * @return The list of athletes read from the file.
+   * @param registry The registry to serve.
+   * @param port     The port to listen on.
+   * @param closed   Counted down by the caller once the registry is closed.
+   * @throws IOException if the port cannot be bound.
    */
-  @SuppressWarnings("unchecked")
-  private static List<Athlete> readAthletesFromFile() {
-    try (
-      ObjectInputStream ois = new ObjectInputStream(
-        new FileInputStream("athletes.dat")
-      )
-    ) {
-      return (List<Athlete>) ois.readObject();
-    } catch (IOException | ClassNotFoundException e) {
-      System.err.println(
-        "Error reading athlete information: " + e.getMessage()
+  private static void serve(
+    AthleteRegistry registry,
+    int port,
+    CountDownLatch closed
+  ) throws IOException {
+    AthleteServer server = new AthleteServer(registry, port);
+    CountDownLatch stopped = new CountDownLatch(1);
+    Runtime
+      .getRuntime()
+      .addShutdownHook(
+        new Thread(() -> {
+          server.stop();
+          stopped.countDown();
+          try {
+            closed.await(10, TimeUnit.SECONDS); // Let runCommand close the store
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        })
       );
+    server.start();
+    System.out.println("Listening on http://localhost:" + server.getPort());
+    try {
+      stopped.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      server.stop();
     }
-    return new ArrayList<>();
   }
 
   /**
-   * Displays information for all registered athletes.
+   * Prints the non-interactive commands.
    */
-  private static void showAllAthletesInformation() {
-    List<Athlete> athletes = readAthletesFromFile();
-    System.out.println("Number of registered athletes: " + athletes.size());
+  private static void printUsage() {
+    System.out.println("Usage: java Program [command]");
+    System.out.println("Without a command the interactive registration starts.");
+    System.out.println("Commands:");
+    System.out.println("  import <file.csv|file.jsonl>  Register athletes in bulk");
+    System.out.println("  bill [yyyy-mm]                Write the monthly invoices");
+    System.out.println("  export <roster|invoices|categories> <file.csv|file.json>");
+    System.out.println("                                Export a report");
+    System.out.println("  migrate [athletes.dat]        Move athletes from a legacy data file into the store");
+    System.out.println("  draw <elimination|pools> <file.csv|file.json> [seed]");
+    System.out.println("                                Draw this month's competition");
+    System.out.println("  validate [rules.properties] [file.csv|file.json]");
+    System.out.println("                                Check the roster against the eligibility rules");
+    System.out.println("  replay <transcripts.txt> [sessions] [threads] [scratch.db]");
+    System.out.println("                                Replay registration transcripts as a load test");
+    System.out.println("  weigh <id> <kg> [category]    Record a weigh-in, moving the athlete to the");
+    System.out.println("                                category of the weight unless one is given");
+    System.out.println("  recategorize                  Move athletes into the category of their weight");
+    System.out.println("  serve [port] [seconds]        Serve registrations and queries over HTTP,");
+    System.out.println("                                printing metrics every given number of seconds");
+  }
+
+  /**
+   * Appends an athlete to the store.
+   *
+   * @param registry The registry to add the athlete to.
+   * @param athlete  The athlete to save.
+   */
+  private static void saveAthleteToFile(
+    AthleteRegistry registry,
+    Athlete athlete
+  ) {
+    try {
+      registry.register(athlete);
+      System.out.println("Athlete information saved successfully.");
+    } catch (IOException | IllegalArgumentException e) { // The weight may not fit the store
+      System.err.println("Error saving athlete information: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Displays information for all registered athletes, one page at a time.
+   * Each page is read from the store only when it is shown.
+   *
+   * @param registry The registry holding the athletes.
+   * @param input    The source of the user's answers.
+   */
+  private static void showAllAthletesInformation(
+    AthleteRegistry registry,
+    InputSource input
+  ) {
+    System.out.println("Number of registered athletes: " + registry.size());
     System.out.println("All athletes' information:");
-    for (Athlete athlete : athletes) {
-      System.out.println(athlete);
+    try {
+      int cursor = 0;
+      while (true) {
+        AthleteRegistry.Page page = registry.page(cursor, PAGE_SIZE);
+        for (Athlete athlete : page.athletes()) {
+          System.out.println(athlete);
+        }
+        if (
+          !page.hasNext() ||
+          !UIManager.confirm("Show more athletes?", input)
+        ) {
+          break;
+        }
+        cursor = page.nextCursor();
+      }
+    } catch (IOException e) {
+      System.err.println(
+        "Error reading athlete information: " + e.getMessage()
+      );
     }
     System.out.println();
   }
 
   /**
-   * Displays information for a specific athlete.
+   * Displays information for a specific athlete. When no athlete has the
+   * exact name, athletes whose name starts with the input are suggested, or
+   * failing that the athletes with the most similar names.
    *
-   * @param athletes The list of athletes to search for the specific athlete.
-   * @param scanner  The scanner object used for user input.
+   * @param registry The registry to search for the specific athlete.
+   * @param input    The source of the user's answers.
    */
   private static void showIndividualAthleteInformation(
-    List<Athlete> athletes,
-    Scanner scanner
+    AthleteRegistry registry,
+    InputSource input
   ) {
-    System.out.println("Number of registered athletes: " + athletes.size());
-    System.out.println("List of athlete names:");
-    for (Athlete athlete : athletes) {
-      System.out.println(athlete.getName());
-    }
-    System.out.println();
+    System.out.println("Number of registered athletes: " + registry.size());
     System.out.print("Enter athlete name: ");
 
-    String name = scanner.nextLine();
-    boolean found = false;
-    for (Athlete athlete : athletes) {
-      if (athlete.getName().equalsIgnoreCase(name)) {
+    String name = input.nextLine();
+    try {
+      List<Athlete> found = registry.findByName(name);
+      if (!found.isEmpty()) {
         System.out.println();
         System.out.println("Athlete information:");
-        System.out.println(athlete);
+        for (Athlete athlete : found) {
+          System.out.println(athlete);
+        }
         System.out.println();
-        found = true;
-        break;
+        return;
       }
-    }
-    if (!found) {
       System.out.println("Athlete not found.");
+      List<Athlete> suggestions = registry.findByNamePrefix(
+        name,
+        MAX_SUGGESTIONS
+      );
+      if (!suggestions.isEmpty()) {
+        System.out.println("Athletes whose name starts with \"" + name + "\":");
+        for (Athlete athlete : suggestions) {
+          System.out.println(athlete.getName());
+        }
+        return;
+      }
+      List<Athlete> similar = registry.findBySimilarName(name, MAX_SUGGESTIONS);
+      if (!similar.isEmpty()) {
+        System.out.println("Did you mean:");
+        for (Athlete athlete : similar) {
+          System.out.println(athlete.getName());
+        }
+      }
+    } catch (IOException e) {
+      System.err.println(
+        "Error reading athlete information: " + e.getMessage()
+      );
     }
   }
 }
@@ -0,0 +1,247 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Replays recorded registration transcripts at full speed, as many
+ * simulated sessions at once, to load test the registration flow.
+ *
+ * A transcript file holds the answers typed during one or more sessions of
+ * {@link Athlete#register(InputSource)}, one answer per line, with a line
+ * "---" between sessions. Lines starting with "#" are comments. Empty lines
+ * are answers, as an empty answer is a valid thing to type at a prompt.
+ *
+ * Each worker thread runs sessions one after another, taking the
+ * transcripts in turn, and prints the prompts to a stream of its own that
+ * throws them away, so the workers never wait on a shared console. A
+ * session fails if its transcript runs out at a prompt or still has answers
+ * left once the registration is complete: the flow has diverged from the
+ * one recorded.
+ */
+abstract class ReplayDriver {
+
+  static final String SESSION_SEPARATOR = "---";
+
+  private static final String COMMENT = "#";
+
+  /**
+   * Reads the sessions of a transcript file.
+   *
+   * @param file The transcript file.
+   * @return The answers of each session.
+   * @throws IOException if the file cannot be read or holds no session.
+   */
+  public static List<List<String>> readTranscripts(Path file)
+    throws IOException {
+    List<List<String>> sessions = new ArrayList<>();
+    List<String> answers = new ArrayList<>();
+    for (String line : Files.readAllLines(file)) {
+      if (line.equals(SESSION_SEPARATOR)) {
+        if (!answers.isEmpty()) {
+          sessions.add(List.copyOf(answers));
+          answers.clear();
+        }
+      } else if (!line.startsWith(COMMENT)) {
+        answers.add(line);
+      }
+    }
+    if (!answers.isEmpty()) {
+      sessions.add(List.copyOf(answers));
+    }
+    if (sessions.isEmpty()) {
+      throw new IOException("No session recorded in " + file);
+    }
+    return sessions;
+  }
+
+  /**
+   * Runs a number of sessions on a number of threads.
+   *
+   * @param transcripts The recorded sessions, replayed in turn.
+   * @param sessions    The number of sessions to run.
+   * @param threads     The number of sessions running at once.
+   * @param registry    The registry to save each athlete to, or null to
+   *                    only run the prompts.
+   * @return The throughput and latencies of the sessions.
+   */
+  public static ReplayResult run(
+    List<List<String>> transcripts,
+    int sessions,
+    int threads,
+    AthleteRegistry registry
+  ) {
+    if (sessions < 1 || threads < 1) {
+      throw new IllegalArgumentException(
+        "Sessions and threads must be at least 1"
+      );
+    }
+    long[] latencies = new long[sessions]; // Each slot written by one worker only
+    boolean[] failed = new boolean[sessions];
+    AtomicInteger next = new AtomicInteger();
+    AtomicReference<String> firstError = new AtomicReference<>();
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+    try {
+      List<Future<?>> running = new ArrayList<>(threads);
+      for (int t = 0; t < threads; t++) {
+        running.add(
+          workers.submit(() -> {
+            PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+            for (
+              int session = next.getAndIncrement();
+              session < sessions;
+              session = next.getAndIncrement()
+            ) {
+              Transcript input = new Transcript(
+                transcripts.get(session % transcripts.size()),
+                out
+              );
+              long begin = System.nanoTime();
+              String error = replay(input, registry);
+              latencies[session] = System.nanoTime() - begin;
+              if (error != null) {
+                failed[session] = true;
+                firstError.compareAndSet(
+                  null,
+                  "session " + (session % transcripts.size() + 1) + ": " + error
+                );
+              }
+            }
+          })
+        );
+      }
+      for (Future<?> worker : running) {
+        worker.get(); // Also publishes the worker's slots
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Replay interrupted");
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Replay failed: " + e.getCause(), e);
+    } finally {
+      workers.shutdownNow();
+    }
+    long elapsed = System.nanoTime() - start;
+    int failures = 0;
+    for (boolean f : failed) {
+      failures += f ? 1 : 0;
+    }
+    Arrays.sort(latencies);
+    return new ReplayResult(
+      sessions,
+      failures,
+      elapsed,
+      latencies,
+      firstError.get()
+    );
+  }
+
+  /**
+   * Runs one session.
+   *
+   * @return Why the session failed, or null if it succeeded.
+   */
+  private static String replay(Transcript input, AthleteRegistry registry) {
+    Athlete athlete = new Athlete();
+    try {
+      athlete.register(input);
+    } catch (NoSuchElementException e) {
+      return e.getMessage();
+    }
+    if (input.remaining() > 0) {
+      return input.remaining() + " answer(s) left after the registration";
+    }
+    if (registry != null) {
+      try {
+        registry.register(athlete);
+      } catch (IOException | IllegalArgumentException e) {
+        return "Error saving athlete: " + e.getMessage();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The answers of one recorded session, handed out in order.
+   */
+  private static final class Transcript implements InputSource {
+
+    private final List<String> answers;
+    private final PrintStream out;
+    private int position;
+
+    Transcript(List<String> answers, PrintStream out) {
+      this.answers = answers;
+      this.out = out;
+    }
+
+    @Override
+    public String nextLine() {
+      if (position == answers.size()) {
+        throw new NoSuchElementException(
+          "Transcript ended at a prompt after " + position + " answer(s)"
+        );
+      }
+      return answers.get(position++);
+    }
+
+    @Override
+    public PrintStream out() {
+      return out;
+    }
+
+    int remaining() {
+      return answers.size() - position;
+    }
+  }
+
+  /**
+   * Outcome of a replay.
+   *
+   * @param sessions     The number of sessions run.
+   * @param failed       The number of sessions whose flow diverged from the
+   *                     transcript or whose athlete could not be saved.
+   * @param elapsedNanos The wall-clock time of the whole replay.
+   * @param latencies    The time each session took, in nanoseconds, sorted.
+   * @param firstError   Why the first failed session failed, or null.
+   */
+  record ReplayResult(
+    int sessions,
+    int failed,
+    long elapsedNanos,
+    long[] latencies,
+    String firstError
+  ) {
+    /**
+     * Returns the number of sessions completed per second.
+     *
+     * @return The throughput.
+     */
+    public double sessionsPerSecond() {
+      return sessions * 1e9 / Math.max(1, elapsedNanos);
+    }
+
+    /**
+     * Returns a latency percentile, by the nearest-rank method.
+     *
+     * @param percent The percentile, from 0 to 100.
+     * @return The latency in microseconds.
+     */
+    public double percentileMicros(double percent) {
+      int rank = (int) Math.ceil(percent / 100 * latencies.length);
+      return latencies[Math.max(0, Math.min(rank, latencies.length) - 1)] / 1e3;
+    }
+  }
+}
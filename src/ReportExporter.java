@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Exports the roster, the monthly invoices, a weight category summary and
+ * eligibility rule violations as CSV or JSON files.
+ *
+ * Every report reads the columnar roster and streams through a
+ * {@link ReportWriter}; names are copied from the roster's arena and plan
+ * and category names are encoded once, so no string is built per athlete.
+ * The roster report has the columns {@link BulkImporter} reads, so a CSV
+ * export can be imported again.
+ */
+abstract class ReportExporter {
+
+  private static final byte[][] PLAN_NAMES = encode(
+    Arrays.stream(TrainingPlan.values()).map(TrainingPlan::getName)
+  );
+  private static final byte[][] CATEGORY_NAMES = encode(
+    Arrays.stream(WeightCategory.values()).map(WeightCategory::getName)
+  );
+  private static final WeightCategory[] CATEGORIES = WeightCategory.values();
+
+  /**
+   * Writes one row per athlete with all of the athlete's details.
+   *
+   * @param roster The roster to export.
+   * @param file   The report file; a ".json" name selects JSON.
+   * @return The number of rows written.
+   * @throws IOException if the file cannot be written.
+   */
+  public static long exportRoster(ColumnarRoster roster, Path file)
+    throws IOException {
+    try (
+      ReportWriter out = new ReportWriter(
+        file,
+        ReportWriter.Format.of(file),
+        "name",
+        "plan",
+        "category",
+        "weight",
+        "coachingHours",
+        "competitions"
+      )
+    ) {
+      int count = roster.size();
+      for (int id = 0; id < count; id++) {
+        roster.writeName(id, out);
+        out.text(PLAN_NAMES[roster.getTrainingPlan(id).ordinal()]);
+        out.text(CATEGORY_NAMES[roster.getWeightCategory(id).ordinal()]);
+        out.number(roster.getCurrentWeight(id));
+        out.number(roster.getPrivateCoachingHours(id));
+        out.number(roster.getCompetitionsEntered(id));
+        out.endRow();
+      }
+      return out.getRows();
+    }
+  }
+
+  /**
+   * Writes one invoice row per athlete, priced from the current fee table.
+   *
+   * @param roster The roster to bill.
+   * @param file   The report file; a ".json" name selects JSON.
+   * @return The number of rows written.
+   * @throws IOException if the file cannot be written.
+   */
+  public static long exportInvoices(ColumnarRoster roster, Path file)
+    throws IOException {
+    FeeSchedule fees = FeeSchedule.current();
+    try (
+      ReportWriter out = new ReportWriter(
+        file,
+        ReportWriter.Format.of(file),
+        BillingRun.HEADER.split(",")
+      )
+    ) {
+      int count = roster.size();
+      for (int id = 0; id < count; id++) {
+        TrainingPlan plan = roster.getTrainingPlan(id);
+        long planCents = fees.trainingPlanCents(plan);
+        long competitionsCents = fees.competitionsCents(
+          roster.getCompetitionsEntered(id)
+        );
+        long coachingCents = fees.coachingCents(roster.getPrivateCoachingHours(id));
+        out.number(id);
+        roster.writeName(id, out);
+        out.text(PLAN_NAMES[plan.ordinal()]);
+        out.cents(planCents).cents(competitionsCents).cents(coachingCents);
+        out.cents(planCents + competitionsCents + coachingCents);
+        out.endRow();
+      }
+      return out.getRows();
+    }
+  }
+
+  /**
+   * Writes one row per weight category with its limits, the number of
+   * athletes in it and their monthly fees.
+   *
+   * @param roster The roster to summarize.
+   * @param file   The report file; a ".json" name selects JSON.
+   * @return The number of rows written.
+   * @throws IOException if the file cannot be written.
+   */
+  public static long exportCategorySummary(ColumnarRoster roster, Path file)
+    throws IOException {
+    FeeSchedule fees = FeeSchedule.current();
+    int[] athletes = new int[CATEGORIES.length];
+    long[] revenue = new long[CATEGORIES.length];
+    int count = roster.size();
+    for (int id = 0; id < count; id++) {
+      int category = roster.getWeightCategory(id).ordinal();
+      athletes[category]++;
+      revenue[category] +=
+        fees.totalCents(
+          roster.getTrainingPlan(id),
+          roster.getCompetitionsEntered(id),
+          roster.getPrivateCoachingHours(id)
+        );
+    }
+    try (
+      ReportWriter out = new ReportWriter(
+        file,
+        ReportWriter.Format.of(file),
+        "category",
+        "lowerWeightLimit",
+        "upperWeightLimit",
+        "athletes",
+        "monthlyRevenue"
+      )
+    ) {
+      for (WeightCategory category : CATEGORIES) {
+        int i = category.ordinal();
+        out.text(CATEGORY_NAMES[i]);
+        out.number(category.getLowerWeightLimit());
+        out.number(category.getUpperWeightLimit());
+        out.number(athletes[i]).cents(revenue[i]);
+        out.endRow();
+      }
+      return out.getRows();
+    }
+  }
+
+  /**
+   * Writes one row per broken eligibility rule, e.g. after the rules changed.
+   *
+   * @param roster     The roster that was checked.
+   * @param violations The athletes breaking rules, as found by
+   *                   {@link EligibilityRules#validate}.
+   * @param file       The report file; a ".json" name selects JSON.
+   * @return The number of rows written.
+   * @throws IOException if the file cannot be written.
+   */
+  public static long exportViolations(
+    ColumnarRoster roster,
+    List<EligibilityRules.Violation> violations,
+    Path file
+  ) throws IOException {
+    try (
+      ReportWriter out = new ReportWriter(
+        file,
+        ReportWriter.Format.of(file),
+        "id",
+        "name",
+        "rule",
+        "message"
+      )
+    ) {
+      for (EligibilityRules.Violation violation : violations) {
+        for (EligibilityRules.Rule rule : violation.rules()) {
+          out.number(violation.id());
+          roster.writeName(violation.id(), out);
+          out.text(rule.name().getBytes(StandardCharsets.UTF_8));
+          out.text(rule.message().getBytes(StandardCharsets.UTF_8));
+          out.endRow();
+        }
+      }
+      return out.getRows();
+    }
+  }
+
+  private static byte[][] encode(Stream<String> names) {
+    return names
+      .map(name -> name.getBytes(StandardCharsets.UTF_8))
+      .toArray(byte[][]::new);
+  }
+}
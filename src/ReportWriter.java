@@ -0,0 +1,277 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming encoder for tabular reports in CSV or JSON.
+ *
+ * Rows are encoded field by field straight into a large direct buffer that
+ * is written to a {@link FileChannel} whenever it fills up, so no string is
+ * built per row. Column names and other constant text are encoded once when
+ * the writer is created; numbers and amounts are written digit by digit.
+ *
+ * A CSV report starts with a header line. A JSON report is an array holding
+ * one object per row, one row per line.
+ */
+class ReportWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final int MAX_NUMBER = 24; // Room for any long or amount
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * Output format of a report.
+   */
+  enum Format {
+    CSV,
+    JSON;
+
+    /**
+     * Picks the format from a file name: JSON for ".json", CSV otherwise.
+     *
+     * @param file The report file.
+     * @return The format to write.
+     */
+    static Format of(Path file) {
+      return file.getFileName().toString().toLowerCase().endsWith(".json")
+        ? JSON
+        : CSV;
+    }
+  }
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final Format format;
+  private final byte[][] keys; // Per column: "name": for JSON, empty for CSV
+  private final byte[] scratch = new byte[MAX_NUMBER];
+  private int column; // Next column of the current row
+  private long rows;
+
+  /**
+   * Creates the report file, replacing any existing one, and writes its header.
+   *
+   * @param file    The report file.
+   * @param format  The output format.
+   * @param columns The column names.
+   * @throws IOException if the file cannot be created.
+   */
+  ReportWriter(Path file, Format format, String... columns) throws IOException {
+    this.channel =
+      FileChannel.open(
+        file,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE
+      );
+    this.format = format;
+    this.keys = new byte[columns.length][];
+    for (int i = 0; i < columns.length; i++) {
+      keys[i] =
+        format == Format.JSON
+          ? ("\"" + columns[i] + "\":").getBytes(StandardCharsets.UTF_8)
+          : new byte[0];
+    }
+    if (format == Format.CSV) {
+      raw(String.join(",", columns).getBytes(StandardCharsets.UTF_8));
+      raw((byte) '\n');
+    } else {
+      raw((byte) '[');
+    }
+  }
+
+  /**
+   * Returns the number of rows written so far.
+   *
+   * @return The number of rows.
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * Writes an integer field.
+   *
+   * @param value The value.
+   * @return This writer.
+   * @throws IOException if the buffer cannot be flushed.
+   */
+  public ReportWriter number(long value) throws IOException {
+    nextField(MAX_NUMBER);
+    if (value < 0) {
+      buffer.put((byte) '-');
+      value = -value;
+    }
+    int start = scratch.length;
+    do {
+      scratch[--start] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    buffer.put(scratch, start, scratch.length - start);
+    return this;
+  }
+
+  /**
+   * Writes an amount in cents with two decimal places.
+   *
+   * @param cents The amount in cents.
+   * @return This writer.
+   * @throws IOException if the buffer cannot be flushed.
+   */
+  public ReportWriter cents(long cents) throws IOException {
+    nextField(MAX_NUMBER);
+    buffer.put(scratch, 0, FeeSchedule.formatCents(cents, scratch, 0));
+    return this;
+  }
+
+  /**
+   * Writes a text field whose UTF-8 bytes are already at hand, quoting or
+   * escaping them as the format requires.
+   *
+   * @param utf8   The array holding the text.
+   * @param offset The index of the first byte.
+   * @param length The number of bytes.
+   * @return This writer.
+   * @throws IOException if the buffer cannot be flushed.
+   */
+  public ReportWriter text(byte[] utf8, int offset, int length)
+    throws IOException {
+    nextField(length * 6 + 2); // Worst case: every byte escaped, plus quotes
+    if (format == Format.JSON) {
+      buffer.put((byte) '"');
+      for (int i = offset; i < offset + length; i++) {
+        byte b = utf8[i];
+        if (b == '"' || b == '\\') {
+          buffer.put((byte) '\\').put(b);
+        } else if (b >= 0 && b < 0x20) {
+          buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0');
+          buffer.put(HEX[b >> 4]).put(HEX[b & 0xF]);
+        } else {
+          buffer.put(b);
+        }
+      }
+      buffer.put((byte) '"');
+    } else if (needsQuotes(utf8, offset, length)) {
+      buffer.put((byte) '"');
+      for (int i = offset; i < offset + length; i++) {
+        if (utf8[i] == '"') {
+          buffer.put((byte) '"');
+        }
+        buffer.put(utf8[i]);
+      }
+      buffer.put((byte) '"');
+    } else {
+      buffer.put(utf8, offset, length);
+    }
+    return this;
+  }
+
+  /**
+   * Writes a text field.
+   *
+   * @param utf8 The UTF-8 bytes of the text.
+   * @return This writer.
+   * @throws IOException if the buffer cannot be flushed.
+   */
+  public ReportWriter text(byte[] utf8) throws IOException {
+    return text(utf8, 0, utf8.length);
+  }
+
+  /**
+   * Ends the current row.
+   *
+   * @throws IOException if the buffer cannot be flushed.
+   */
+  public void endRow() throws IOException {
+    ensure(2);
+    buffer.put(format == Format.JSON ? (byte) '}' : (byte) '\n');
+    column = 0;
+    rows++;
+  }
+
+  /**
+   * Finishes the report and closes the file.
+   *
+   * @throws IOException if the rest of the report cannot be written.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (format == Format.JSON) {
+        raw(rows == 0 ? (byte) ']' : (byte) '\n');
+        if (rows > 0) {
+          raw((byte) ']');
+        }
+        raw((byte) '\n');
+      }
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes the separator and key that come before a field, and makes room
+   * for the field itself.
+   */
+  private void nextField(int size) throws IOException {
+    byte[] key = keys[column];
+    ensure(key.length + size + 4);
+    if (column == 0) {
+      if (format == Format.JSON) {
+        buffer.put(rows == 0 ? (byte) '\n' : (byte) ',');
+        if (rows > 0) {
+          buffer.put((byte) '\n');
+        }
+        buffer.put((byte) '{');
+      }
+    } else {
+      buffer.put((byte) ',');
+    }
+    buffer.put(key);
+    column++;
+  }
+
+  private static boolean needsQuotes(byte[] utf8, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      byte b = utf8[i];
+      if (b == ',' || b == '"' || b == '\n' || b == '\r') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void raw(byte b) throws IOException {
+    ensure(1);
+    buffer.put(b);
+  }
+
+  private void raw(byte[] bytes) throws IOException {
+    ensure(bytes.length);
+    buffer.put(bytes);
+  }
+
+  /**
+   * Flushes the buffer if fewer than the given number of bytes are free.
+   */
+  private void ensure(int size) throws IOException {
+    if (buffer.remaining() < size) {
+      flush();
+      if (buffer.remaining() < size) {
+        throw new IOException("Report field too large: " + size + " bytes");
+      }
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -0,0 +1,207 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals over the roster, kept up to date on every registration and
+ * weight category change so that they can be read without a scan.
+ *
+ * Athletes are counted per training plan and weight category, and coaching
+ * hours and competition entries are summed. A month's fees are linear in
+ * those figures, so the projected revenue is worked out from them and the
+ * current {@link FeeSchedule} on each call and follows any change of rates.
+ *
+ * Updates from several threads are safe. A reader racing with updates may
+ * see some of the figures before a change and others after it.
+ */
+class RosterAggregates {
+
+  private static final TrainingPlan[] PLANS = TrainingPlan.values();
+  private static final WeightCategory[] CATEGORIES = WeightCategory.values();
+
+  private final AtomicLongArray counts = new AtomicLongArray(
+    PLANS.length * CATEGORIES.length
+  ); // Athletes by [plan][category]
+  private final LongAdder coachingHours = new LongAdder(); // Private coaching hours per week
+  private final LongAdder billedCoachingHours = new LongAdder(); // The same, capped per athlete as billed
+  private final LongAdder competitionEntries = new LongAdder();
+
+  /**
+   * Builds the aggregates of a whole roster in one pass.
+   *
+   * @param roster The roster.
+   * @return The aggregates.
+   */
+  public static RosterAggregates of(ColumnarRoster roster) {
+    RosterAggregates aggregates = new RosterAggregates();
+    long[] counts = new long[aggregates.counts.length()];
+    long[] sums = new long[3]; // Coaching hours, billed hours, competitions
+    roster.forEachChunk(
+      roster.size(),
+      (firstId, length, plans, categories, weights, hours, competitions) -> {
+        for (int i = 0; i < length; i++) {
+          counts[plans[i] * CATEGORIES.length + categories[i]]++;
+          sums[0] += hours[i];
+          sums[1] += Math.min(hours[i], CostCalculator.MAX_COACHING_HOURS);
+          sums[2] += competitions[i];
+        }
+      }
+    );
+    for (int slot = 0; slot < counts.length; slot++) {
+      aggregates.counts.set(slot, counts[slot]);
+    }
+    aggregates.coachingHours.add(sums[0]);
+    aggregates.billedCoachingHours.add(sums[1]);
+    aggregates.competitionEntries.add(sums[2]);
+    return aggregates;
+  }
+
+  /**
+   * Counts a newly registered athlete.
+   *
+   * @param athlete The athlete.
+   */
+  public void add(Athlete athlete) {
+    add(
+      athlete.getTrainingPlan(),
+      athlete.getWeightCategory(),
+      athlete.getPrivateCoachingHours(),
+      athlete.getCompetitionsEntered()
+    );
+  }
+
+  /**
+   * Counts a newly registered athlete from its details.
+   *
+   * @param plan           The training plan.
+   * @param weightCategory The weight category.
+   * @param hours          The private coaching hours per week.
+   * @param competitions   The number of competitions entered this month.
+   */
+  public void add(
+    TrainingPlan plan,
+    WeightCategory weightCategory,
+    int hours,
+    int competitions
+  ) {
+    counts.incrementAndGet(slot(plan, weightCategory));
+    coachingHours.add(hours);
+    billedCoachingHours.add(Math.min(hours, CostCalculator.MAX_COACHING_HOURS));
+    competitionEntries.add(competitions);
+  }
+
+  /**
+   * Moves an athlete from one weight category to another.
+   *
+   * @param plan The training plan of the athlete.
+   * @param from The previous weight category.
+   * @param to   The new weight category.
+   */
+  public void move(TrainingPlan plan, WeightCategory from, WeightCategory to) {
+    if (from != to) {
+      counts.decrementAndGet(slot(plan, from));
+      counts.incrementAndGet(slot(plan, to));
+    }
+  }
+
+  /**
+   * Returns the number of athletes on a plan in a weight category.
+   *
+   * @param plan           The training plan.
+   * @param weightCategory The weight category.
+   * @return The number of athletes.
+   */
+  public long count(TrainingPlan plan, WeightCategory weightCategory) {
+    return counts.get(slot(plan, weightCategory));
+  }
+
+  /**
+   * Returns the number of athletes on a training plan.
+   *
+   * @param plan The training plan.
+   * @return The number of athletes.
+   */
+  public long countByPlan(TrainingPlan plan) {
+    long total = 0;
+    for (WeightCategory category : CATEGORIES) {
+      total += count(plan, category);
+    }
+    return total;
+  }
+
+  /**
+   * Returns the number of athletes in a weight category.
+   *
+   * @param weightCategory The weight category.
+   * @return The number of athletes.
+   */
+  public long countByWeightCategory(WeightCategory weightCategory) {
+    long total = 0;
+    for (TrainingPlan plan : PLANS) {
+      total += count(plan, weightCategory);
+    }
+    return total;
+  }
+
+  /**
+   * Returns the number of athletes.
+   *
+   * @return The number of athletes.
+   */
+  public long total() {
+    long total = 0;
+    for (TrainingPlan plan : PLANS) {
+      total += countByPlan(plan);
+    }
+    return total;
+  }
+
+  /**
+   * Returns the private coaching hours booked per week by all athletes.
+   *
+   * @return The total hours.
+   */
+  public long totalCoachingHours() {
+    return coachingHours.sum();
+  }
+
+  /**
+   * Returns the competitions entered this month by all athletes.
+   *
+   * @return The total entries.
+   */
+  public long totalCompetitionEntries() {
+    return competitionEntries.sum();
+  }
+
+  /**
+   * Returns the monthly revenue the roster brings in at the current fees.
+   *
+   * @return The projected revenue in cents.
+   */
+  public long projectedMonthlyCents() {
+    return projectedMonthlyCents(FeeSchedule.current());
+  }
+
+  /**
+   * Returns the monthly revenue the roster brings in at the given fees.
+   *
+   * @param fees The fee table.
+   * @return The projected revenue in cents.
+   */
+  public long projectedMonthlyCents(FeeSchedule fees) {
+    long total = 0;
+    for (TrainingPlan plan : PLANS) {
+      total += countByPlan(plan) * fees.trainingPlanCents(plan);
+    }
+    total += fees.getCompetitionFeeCents() * competitionEntries.sum();
+    total +=
+      fees.getCoachingRateCents() *
+      CostCalculator.WEEKS_PER_MONTH *
+      billedCoachingHours.sum();
+    return total;
+  }
+
+  private static int slot(TrainingPlan plan, WeightCategory weightCategory) {
+    return plan.ordinal() * CATEGORIES.length + weightCategory.ordinal();
+  }
+}
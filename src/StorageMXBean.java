@@ -0,0 +1,27 @@
+/**
+ * Management view of the file traffic of the athlete data, registered with
+ * the platform MBean server by {@link Metrics#registerMBeans()}.
+ */
+public interface StorageMXBean {
+  /**
+   * Returns the number of bytes written to the store, the write-ahead log,
+   * the index file and the weight history.
+   *
+   * @return The bytes written since the program started.
+   */
+  long getBytesWritten();
+
+  /**
+   * Returns the number of bytes read from the same files.
+   *
+   * @return The bytes read since the program started.
+   */
+  long getBytesRead();
+
+  /**
+   * Returns the number of times a file was forced to the storage device.
+   *
+   * @return The syncs since the program started.
+   */
+  long getSyncs();
+}
@@ -1,4 +1,4 @@
-import java.util.Scanner;
+import java.io.PrintStream;
 
 /**
  * Manages user interface interactions for the North Sussex Judo training system.
@@ -15,25 +15,22 @@ class UIManager {
   /**
    * Allows the user to select a training plan from available options.
    *
-   * @param scanner The Scanner object to read user input.
+   * @param input The source of the user's answers.
    * @return The selected TrainingPlan.
    */
-  public static TrainingPlan selectTrainingPlan(Scanner scanner) {
+  public static TrainingPlan selectTrainingPlan(InputSource input) {
+    PrintStream out = input.out();
     while (true) {
-      System.out.println("Select a training plan:");
+      out.println("Select a training plan:");
       for (TrainingPlan plan : TrainingPlan.values()) {
-        System.out.println(
-          plan.getName() + " - weekly fee: $" + plan.getWeeklyFee()
-        );
+        out.println(plan.getName() + " - weekly fee: $" + plan.getWeeklyFee());
       }
-      String planName = promptString("Enter training plan name: ", scanner);
+      String planName = promptString("Enter training plan name: ", input);
       try {
         return TrainingPlan.getTrainingPlanByName(planName);
       } catch (IllegalArgumentException e) {
-        System.out.println();
-        System.out.println(
-          "Invalid training plan. Please select from the options."
-        );
+        out.println();
+        out.println("Invalid training plan. Please select from the options.");
       }
     }
   }
@@ -41,13 +38,14 @@ class UIManager {
   /**
    * Allows the user to select a weight category from available options.
    *
-   * @param scanner The Scanner object to read user input.
+   * @param input The source of the user's answers.
    * @return The selected WeightCategory.
    */
-  public static WeightCategory selectWeightCategory(Scanner scanner) {
-    System.out.println("Select a weight category:");
+  public static WeightCategory selectWeightCategory(InputSource input) {
+    PrintStream out = input.out();
+    out.println("Select a weight category:");
     for (WeightCategory category : WeightCategory.values()) {
-      System.out.println(
+      out.println(
         category.getName() +
         " - lower weight limit: " +
         category.getLowerWeightLimit() +
@@ -59,30 +57,20 @@ class UIManager {
     }
 
     while (true) {
-      String categoryName = promptString(
-        "Enter weight category name: ",
-        scanner
-      );
-      // Remove spaces and dashes to make it easier for the user to input
-      categoryName = categoryName.replaceAll("[\\s-]", "");
-      categoryName = categoryName.toUpperCase();
-
+      String categoryName = promptString("Enter weight category name: ", input);
       // Check if the input matches any weight category
-      for (WeightCategory category : WeightCategory.values()) {
-        if (
-          categoryName.equals(
-            category.getName().replaceAll("[\\s-]", "").toUpperCase()
-          )
-        ) {
-          System.out.println("You have chosen " + category.getName() + ".");
-          return category;
-        }
+      try {
+        WeightCategory category = WeightCategory.getWeightCategoryByName(
+          categoryName
+        );
+        out.println("You have chosen " + category.getName() + ".");
+        return category;
+      } catch (IllegalArgumentException e) {
+        // Fall through and ask again
       }
 
       // If no match found, ask the user to input again
-      System.out.println(
-        "Invalid input. Please enter a valid weight category name."
-      );
+      out.println("Invalid input. Please enter a valid weight category name.");
     }
   }
 
@@ -90,22 +78,23 @@ class UIManager {
    * Prompts the user to enter an integer value.
    *
    * @param message The message to display to the user.
-   * @param scanner The Scanner object to read user input.
+   * @param input The source of the user's answers.
    * @return The integer value entered by the user.
    */
-  public static int promptInt(String message, Scanner scanner) {
+  public static int promptInt(String message, InputSource input) {
+    PrintStream out = input.out();
     while (true) {
-      System.out.print(message);
-      String input = scanner.nextLine();
+      out.print(message);
+      String answer = input.nextLine();
       try {
-        int number = Integer.parseInt(input);
+        int number = Integer.parseInt(answer);
         if (number >= 0) {
           return number;
         } else {
-          System.out.println("Invalid input. Please enter a positive integer.");
+          out.println("Invalid input. Please enter a positive integer.");
         }
       } catch (NumberFormatException e) {
-        System.out.println("Invalid input. Please enter a valid integer.");
+        out.println("Invalid input. Please enter a valid integer.");
       }
     }
   }
@@ -114,25 +103,26 @@ class UIManager {
    * Prompts the user to enter a string value.
    *
    * @param message The message to display to the user.
-   * @param scanner The Scanner object to read user input.
+   * @param input The source of the user's answers.
    * @return The string entered by the user.
    */
-  public static String promptString(String message, Scanner scanner) {
-    System.out.print(message);
-    return scanner.nextLine();
+  public static String promptString(String message, InputSource input) {
+    input.out().print(message);
+    return input.nextLine();
   }
 
   /**
    * Prompts the user to confirm an action.
    *
    * @param message The message to display to the user.
-   * @param scanner The Scanner object to read user input.
+   * @param input The source of the user's answers.
    * @return true if the user confirms, false otherwise.
    */
-  public static boolean confirm(String message, Scanner scanner) {
+  public static boolean confirm(String message, InputSource input) {
+    PrintStream out = input.out();
     while (true) {
-      System.out.print(message + " (yes/no): ");
-      String choice = scanner.nextLine();
+      out.print(message + " (yes/no): ");
+      String choice = input.nextLine();
       if (choice.equalsIgnoreCase("yes") || choice.equalsIgnoreCase("y")) {
         return true;
       } else if (
@@ -140,7 +130,7 @@ class UIManager {
       ) {
         return false;
       } else {
-        System.out.println("Invalid choice. Please enter 'yes' or 'no'.");
+        out.println("Invalid choice. Please enter 'yes' or 'no'.");
       }
     }
   }
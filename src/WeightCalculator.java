@@ -1,30 +1,41 @@
-import java.util.Scanner;
+import java.io.PrintStream;
 
 /**
  * Calculates and compares the weight of an athlete with a chosen weight category.
+ * Holds no state of its own, so several registrations can use it at once.
  */
 abstract class WeightCalculator {
 
-  private static int weight; // current weight
+  /**
+   * Checks whether a weight lies within a weight category's limits.
+   *
+   * @param weight         The weight in kilograms.
+   * @param weightCategory The weight category to check against.
+   * @return true if the weight fits the category.
+   */
+  public static boolean fits(int weight, WeightCategory weightCategory) {
+    return (
+      weight >= weightCategory.getLowerWeightLimit() &&
+      weight <= weightCategory.getUpperWeightLimit()
+    );
+  }
 
   /**
    * Compares the athlete's current weight with the specified weight category.
    *
    * @param athlete The athlete object whose weight is being compared.
    * @param weightCategory The weight category to compare against.
-   * @param scanner The Scanner object to read user input.
+   * @param input The source of the user's answers.
    * @return The athlete's current weight if it matches the category, or the updated weight if changed.
    */
   public static int compareWeight(
     Athlete athlete,
     WeightCategory weightCategory,
-    Scanner scanner
+    InputSource input
   ) {
-    if (
-      athlete.getCurrentWeight() >= weightCategory.getLowerWeightLimit() &&
-      athlete.getCurrentWeight() <= weightCategory.getUpperWeightLimit()
-    ) {
-      System.out.println(
+    PrintStream out = input.out();
+    if (fits(athlete.getCurrentWeight(), weightCategory)) {
+      out.println(
         "Your current weight is " +
         athlete.getCurrentWeight() +
         " kg." +
@@ -41,11 +52,11 @@ abstract class WeightCalculator {
       return athlete.getCurrentWeight();
     } // Return the current weight if it matches the category
     else {
-      System.out.println();
-      System.out.println(
+      out.println();
+      out.println(
         "Your current weight and chosen competition's weight category do not match."
       );
-      System.out.println(
+      out.println(
         "Your chosen weight category is " +
         weightCategory +
         " - lower weight limit: " +
@@ -55,34 +66,45 @@ abstract class WeightCalculator {
         weightCategory.getUpperWeightLimit() +
         "kg."
       );
-      System.out.println(
+      out.println(
         "Your current weight is " + athlete.getCurrentWeight() + " kg."
       );
+      WeightCategory suggested = WeightClassifier.classify(
+        athlete.getCurrentWeight()
+      );
+      if (suggested != null) {
+        out.println(
+          "The weight category for your current weight is " +
+          suggested.getName() +
+          "."
+        );
+      }
       while (true) {
-        System.out.println();
-        System.out.print(
+        out.println();
+        out.print(
           "Do you want to change weight category or current weight? (Yes/No): "
         );
-        String changeChoice = scanner.nextLine();
+        String changeChoice = input.nextLine();
         if (
           changeChoice.equalsIgnoreCase("yes") ||
           changeChoice.equalsIgnoreCase("y")
         ) {
-          int option = promptOption(scanner);
+          int option = promptOption(suggested, input);
           if (option == 1) {
-            weight = promptCurrentWeight(scanner);
-            athlete.setCurrentWeight(weight); // Update the current weight
+            athlete.setCurrentWeight(promptCurrentWeight(input)); // Update the current weight
           } else if (option == 2) {
-            weightCategory = promptWeightCategory(scanner);
+            weightCategory = promptWeightCategory(input);
             athlete.setWeightCategory(weightCategory); // Update the current weight category
+          } else if (option == 3) {
+            athlete.setWeightCategory(suggested); // Take the category that matches the weight
           }
           // Recursively call compareWeight with the new values
-          return compareWeight(athlete, athlete.getWeightCategory(), scanner);
+          return compareWeight(athlete, athlete.getWeightCategory(), input);
         } else if (
           changeChoice.equalsIgnoreCase("no") ||
           changeChoice.equalsIgnoreCase("n")
         ) {
-          System.out.println(
+          out.println(
             "Your current weight is " +
             athlete.getCurrentWeight() +
             " kg." +
@@ -98,7 +120,7 @@ abstract class WeightCalculator {
           );
           return athlete.getCurrentWeight(); // Return the current weight if not changed
         } else {
-          System.out.println("Invalid choice. Please enter 'yes' or 'no'.");
+          out.println("Invalid choice. Please enter 'yes' or 'no'.");
         }
       }
     }
@@ -107,24 +129,32 @@ abstract class WeightCalculator {
   /**
    * Prompts the user to choose between changing the current weight or weight category.
    *
-   * @param scanner The Scanner object to read user input.
-   * @return The selected option (1 for changing weight, 2 for changing category).
+   * @param suggested The weight category matching the current weight, or null if there is none.
+   * @param input The source of the user's answers.
+   * @return The selected option (1 for changing weight, 2 for changing category, 3 for the suggested category).
    */
-  private static int promptOption(Scanner scanner) {
+  private static int promptOption(WeightCategory suggested, InputSource input) {
+    PrintStream out = input.out();
+    int options = suggested == null ? 2 : 3;
     while (true) {
-      System.out.println();
-      System.out.println("Choose an option:");
-      System.out.println("1. Change current weight");
-      System.out.println("2. Change weight category");
+      out.println();
+      out.println("Choose an option:");
+      out.println("1. Change current weight");
+      out.println("2. Change weight category");
+      if (suggested != null) {
+        out.println("3. Use suggested weight category " + suggested.getName());
+      }
       try {
-        int option = Integer.parseInt(scanner.nextLine());
-        if (option == 1 || option == 2) {
+        int option = Integer.parseInt(input.nextLine());
+        if (option >= 1 && option <= options) {
           return option;
         } else {
-          System.out.println("Invalid option. Please choose 1 or 2.");
+          out.println(
+            "Invalid option. Please choose a number between 1 and " + options + "."
+          );
         }
       } catch (NumberFormatException e) {
-        System.out.println("Invalid input. Please enter a number.");
+        out.println("Invalid input. Please enter a number.");
       }
     }
   }
@@ -132,28 +162,29 @@ abstract class WeightCalculator {
   /**
    * Prompts the user to enter the current weight.
    *
-   * @param scanner The Scanner object to read user input.
+   * @param input The source of the user's answers.
    * @return The entered current weight.
    */
-  private static int promptCurrentWeight(Scanner scanner) {
+  private static int promptCurrentWeight(InputSource input) {
+    PrintStream out = input.out();
     while (true) {
-      System.out.println();
-      System.out.print("Enter current weight: ");
+      out.println();
+      out.print("Enter current weight: ");
       try {
-        weight = Integer.parseInt(scanner.nextLine());
+        int weight = Integer.parseInt(input.nextLine());
         if (weight >= 0 && weight <= 1000) {
-          System.out.println(
+          out.println(
             "Your have set your current weight to " + weight + " kg."
           );
 
           return weight;
         } else {
-          System.out.println(
+          out.println(
             "Invalid weight. Please enter a number between 0 and 1000."
           );
         }
       } catch (NumberFormatException e) {
-        System.out.println("Invalid input. Please enter a number.");
+        out.println("Invalid input. Please enter a number.");
       }
     }
   }
@@ -161,36 +192,33 @@ abstract class WeightCalculator {
   /**
    * Prompts the user to select a weight category.
    *
-   * @param scanner The Scanner object to read user input.
+   * @param input The source of the user's answers.
    * @return The selected weight category.
    */
-  private static WeightCategory promptWeightCategory(Scanner scanner) {
+  private static WeightCategory promptWeightCategory(InputSource input) {
+    PrintStream out = input.out();
     while (true) {
-      System.out.println();
-      System.out.println("Choose a weight category:");
+      out.println();
+      out.println("Choose a weight category:");
       for (int i = 0; i < WeightCategory.values().length; i++) {
-        System.out.println(
-          (i + 1) + ". " + WeightCategory.values()[i].getName()
-        );
+        out.println((i + 1) + ". " + WeightCategory.values()[i].getName());
       }
       try {
-        int categoryIndex = Integer.parseInt(scanner.nextLine());
+        int categoryIndex = Integer.parseInt(input.nextLine());
         if (
           categoryIndex >= 1 && categoryIndex <= WeightCategory.values().length
         ) {
-          System.out.println();
-          System.out.println(
+          out.println();
+          out.println(
             "Your chosen weight category is " +
             WeightCategory.values()[categoryIndex - 1]
           );
           return WeightCategory.values()[categoryIndex - 1];
         } else {
-          System.out.println(
-            "Invalid category. Please choose a valid category."
-          );
+          out.println("Invalid category. Please choose a valid category.");
         }
       } catch (NumberFormatException e) {
-        System.out.println("Invalid input. Please enter a number.");
+        out.println("Invalid input. Please enter a number.");
       }
     }
   }
@@ -52,4 +52,36 @@ enum WeightCategory {
   public int getUpperWeightLimit() {
     return upperWeightLimit;
   }
+
+  /**
+   * Returns the WeightCategory enum instance based on the provided name.
+   * Spaces, dashes and case are ignored, so "light middleweight" matches
+   * Light-Middleweight.
+   *
+   * @param name The name of the weight category to retrieve.
+   * @return The WeightCategory enum instance corresponding to the provided name.
+   * @throws IllegalArgumentException if the provided name does not match any weight category.
+   */
+  public static WeightCategory getWeightCategoryByName(String name)
+    throws IllegalArgumentException {
+    String key = normalizeName(name);
+    for (WeightCategory category : WeightCategory.values()) {
+      if (normalizeName(category.getName()).equals(key)) {
+        return category;
+      }
+    }
+    throw new IllegalArgumentException("Invalid weight category name: " + name);
+  }
+
+  // Remove spaces and dashes to make it easier for the user to input
+  private static String normalizeName(String name) {
+    StringBuilder normalized = new StringBuilder(name.length());
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c != '-' && !Character.isWhitespace(c)) {
+        normalized.append(Character.toUpperCase(c));
+      }
+    }
+    return normalized.toString();
+  }
 }
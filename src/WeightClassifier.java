@@ -0,0 +1,57 @@
+import java.util.Arrays;
+
+/**
+ * Maps weights to weight categories in constant time.
+ *
+ * A table indexed by kilogram is built once from the bounds declared on
+ * {@link WeightCategory}, so classifying a weight is a single array read.
+ */
+abstract class WeightClassifier {
+
+  private static final WeightCategory[] CATEGORIES = WeightCategory.values();
+  private static final byte UNCLASSIFIED = -1; // Table entry for a weight outside every category
+  private static final byte[] BY_KILOGRAM = buildTable(); // Category ordinal by kilogram
+
+  /**
+   * Returns the weight category that the given weight falls in.
+   *
+   * @param weight The weight in kilograms.
+   * @return The matching weight category, or null if no category covers the weight.
+   */
+  public static WeightCategory classify(int weight) {
+    int ordinal = ordinalOf(weight);
+    return ordinal < 0 ? null : CATEGORIES[ordinal];
+  }
+
+  /**
+   * Returns the ordinal of the weight category that the given weight falls in.
+   *
+   * @param weight The weight in kilograms.
+   * @return The ordinal of the matching weight category, or -1 if none covers the weight.
+   */
+  public static int ordinalOf(int weight) {
+    if (weight < 0 || weight >= BY_KILOGRAM.length) {
+      return UNCLASSIFIED;
+    }
+    return BY_KILOGRAM[weight];
+  }
+
+  private static byte[] buildTable() {
+    int maxWeight = 0;
+    for (WeightCategory category : CATEGORIES) {
+      maxWeight = Math.max(maxWeight, category.getUpperWeightLimit());
+    }
+    byte[] table = new byte[maxWeight + 1];
+    Arrays.fill(table, UNCLASSIFIED);
+    for (WeightCategory category : CATEGORIES) {
+      for (
+        int weight = Math.max(0, category.getLowerWeightLimit());
+        weight <= category.getUpperWeightLimit();
+        weight++
+      ) {
+        table[weight] = (byte) category.ordinal();
+      }
+    }
+    return table;
+  }
+}
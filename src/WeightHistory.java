@@ -0,0 +1,609 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Weigh-in history of every athlete, so that a new weight no longer
+ * replaces the previous one without a trace.
+ *
+ * Each athlete's weigh-ins form a time series of (day, weight) points kept
+ * in date order. The series is split into blocks of up to
+ * {@link #BLOCK_POINTS} points: a block holds its first point in full and
+ * every later point as the days and kilograms since the one before, as
+ * varints, so a weekly weigh-in takes two bytes. Blocks also know their
+ * date range, so range queries skip the blocks outside it.
+ *
+ * The history is kept in memory and appended to its own file, framed like
+ * the {@link AthleteStore}, one record per block. New weigh-ins are written
+ * as small blocks; when the file is opened with many more records than
+ * blocks it is rewritten with the full blocks. A weigh-in joins its series
+ * in memory only once it has been written, so a failed write leaves no
+ * point behind that the file lacks.
+ */
+class WeightHistory implements Closeable {
+
+  static final int MAGIC = 0x4E534A48; // "NSJH"
+  static final short FORMAT_VERSION = 1;
+
+  private static final int BLOCK_POINTS = 64; // Points per block at most
+  private static final int MAX_VARINT = 5;
+  private static final int MAX_RECORD_HEADER =
+    AthleteStore.RECORD_OVERHEAD + 4 * MAX_VARINT; // Framing, id, count, first day and weight
+  private static final int COMPACT_RATIO = 2; // Records per block that trigger a rewrite on open
+  private static final int WRITE_BUFFER_SIZE = 1 << 20;
+  private static final byte[] NO_DELTAS = new byte[0];
+
+  private final Path path;
+  private final Object appendLock = new Object(); // Serializes writes to the end of the file
+  private FileChannel channel;
+  private long endOffset; // Offset at which the next record is appended
+  private volatile AtomicReferenceArray<Series> series =
+    new AtomicReferenceArray<>(0); // By athlete id, null until the first weigh-in
+
+  private WeightHistory(Path path) {
+    this.path = path;
+  }
+
+  /**
+   * Opens the history file at the given path, creating it if it does not
+   * exist, and loads every weigh-in. A record left half-written by a crash
+   * is cut off.
+   *
+   * @param path The path of the history file.
+   * @return The opened history.
+   * @throws IOException if the file cannot be read or is not a weight history.
+   */
+  public static WeightHistory open(Path path) throws IOException {
+    WeightHistory history = new WeightHistory(path);
+    FileChannel channel = FileChannel.open(
+      path,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.READ,
+      StandardOpenOption.WRITE
+    );
+    int[] records = { 0 };
+    try {
+      if (channel.size() == 0) {
+        writeHeader(channel);
+        history.endOffset = AthleteStore.HEADER_SIZE;
+      } else {
+        history.checkHeader(channel);
+        history.endOffset =
+          AthleteStore.scan(
+            channel,
+            channel.size(),
+            (offset, payload) -> {
+              history.load(payload);
+              records[0]++;
+            }
+          );
+        if (history.endOffset < channel.size()) {
+          channel.truncate(history.endOffset); // Drop a torn record left by a crash
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    history.channel = channel;
+    if (records[0] > COMPACT_RATIO * history.blockCount()) {
+      history.rewrite();
+    }
+    return history;
+  }
+
+  /**
+   * Records a weigh-in.
+   *
+   * @param id     The id of the athlete.
+   * @param date   The day of the weigh-in, no earlier than the athlete's last one.
+   * @param weight The weight in kilograms.
+   * @throws IOException if the weigh-in cannot be written.
+   * @throws IllegalArgumentException if the date is before the last weigh-in.
+   */
+  public void record(int id, LocalDate date, int weight) throws IOException {
+    int day = (int) date.toEpochDay();
+    Series athlete = seriesFor(id);
+    ByteBuffer out = ByteBuffer.allocate(MAX_RECORD_HEADER);
+    synchronized (athlete) {
+      athlete.checkOrder(day);
+      writeBlock(out, id, day, weight, null, 0, 1);
+      out.flip();
+      write(out);
+      athlete.append(day, weight); // Only once it is in the file
+    }
+  }
+
+  /**
+   * Records the weigh-ins of a batch of athletes on one day with a single
+   * write, e.g. at registration.
+   *
+   * @param firstId The id of the first athlete; the others follow in order.
+   * @param date    The day of the weigh-ins.
+   * @param weights The weight of each athlete in kilograms.
+   * @throws IOException if the weigh-ins cannot be written.
+   * @throws IllegalArgumentException if the date is before an athlete's last weigh-in.
+   */
+  public void recordAll(int firstId, LocalDate date, int[] weights)
+    throws IOException {
+    int day = (int) date.toEpochDay();
+    ByteBuffer out = ByteBuffer.allocate(weights.length * MAX_RECORD_HEADER);
+    Series[] athletes = new Series[weights.length];
+    for (int i = 0; i < weights.length; i++) {
+      athletes[i] = seriesFor(firstId + i);
+      synchronized (athletes[i]) {
+        athletes[i].checkOrder(day);
+      }
+      writeBlock(out, firstId + i, day, weights[i], null, 0, 1);
+    }
+    out.flip();
+    write(out);
+    for (int i = 0; i < weights.length; i++) {
+      synchronized (athletes[i]) {
+        athletes[i].append(day, weights[i]); // Only once they are in the file
+      }
+    }
+  }
+
+  /**
+   * Returns an athlete's most recent weigh-in.
+   *
+   * @param id The id of the athlete.
+   * @return The last weigh-in, or null if the athlete has none.
+   */
+  public WeighIn latest(int id) {
+    Series athlete = seriesOf(id);
+    if (athlete == null) {
+      return null;
+    }
+    synchronized (athlete) {
+      return new WeighIn(
+        LocalDate.ofEpochDay(athlete.lastDay),
+        athlete.lastWeight
+      );
+    }
+  }
+
+  /**
+   * Returns an athlete's weigh-ins between two days.
+   *
+   * @param id   The id of the athlete.
+   * @param from The first day, inclusive.
+   * @param to   The last day, inclusive.
+   * @return The weigh-ins in date order.
+   */
+  public List<WeighIn> range(int id, LocalDate from, LocalDate to) {
+    List<WeighIn> weighIns = new ArrayList<>();
+    Series athlete = seriesOf(id);
+    if (athlete != null) {
+      athlete.forEach(
+        (int) from.toEpochDay(),
+        (int) to.toEpochDay(),
+        (day, weight) ->
+          weighIns.add(new WeighIn(LocalDate.ofEpochDay(day), weight))
+      );
+    }
+    return weighIns;
+  }
+
+  /**
+   * Returns the trend of an athlete's weight over the last weeks, as the
+   * slope of the least-squares line through the weigh-ins.
+   *
+   * @param id    The id of the athlete.
+   * @param weeks The number of weeks to look back.
+   * @param asOf  The last day of the period.
+   * @return The change in kilograms per week, or NaN with fewer than two
+   *         weigh-ins on different days in the period.
+   */
+  public double trend(int id, int weeks, LocalDate asOf) {
+    int to = (int) asOf.toEpochDay();
+    int from = to - weeks * 7;
+    double[] sums = new double[5]; // n, sum x, sum y, sum xy, sum x^2
+    Series athlete = seriesOf(id);
+    if (athlete != null) {
+      athlete.forEach(
+        from,
+        to,
+        (day, weight) -> {
+          double x = day - from;
+          sums[0]++;
+          sums[1] += x;
+          sums[2] += weight;
+          sums[3] += x * weight;
+          sums[4] += x * x;
+        }
+      );
+    }
+    double n = sums[0];
+    double denominator = n * sums[4] - sums[1] * sums[1];
+    if (n < 2 || denominator == 0) {
+      return Double.NaN;
+    }
+    return (n * sums[3] - sums[1] * sums[2]) / denominator * 7;
+  }
+
+  /**
+   * Walks the weigh-ins of every athlete between two days, e.g. to chart a
+   * season for the whole club.
+   *
+   * @param from    The first day, inclusive.
+   * @param to      The last day, inclusive.
+   * @param visitor Receives each weigh-in, athlete by athlete in date order.
+   * @return The number of weigh-ins visited.
+   */
+  public long forEach(LocalDate from, LocalDate to, Visitor visitor) {
+    int first = (int) from.toEpochDay();
+    int last = (int) to.toEpochDay();
+    AtomicReferenceArray<Series> all = series;
+    long[] count = { 0 };
+    for (int id = 0; id < all.length(); id++) {
+      Series athlete = all.get(id);
+      if (athlete != null) {
+        int athleteId = id;
+        athlete.forEach(
+          first,
+          last,
+          (day, weight) -> {
+            visitor.visit(athleteId, day, weight);
+            count[0]++;
+          }
+        );
+      }
+    }
+    return count[0];
+  }
+
+  /**
+   * Returns the number of weigh-ins recorded.
+   *
+   * @return The number of weigh-ins.
+   */
+  public long size() {
+    long points = 0;
+    AtomicReferenceArray<Series> all = series;
+    for (int id = 0; id < all.length(); id++) {
+      Series athlete = all.get(id);
+      if (athlete != null) {
+        synchronized (athlete) {
+          points += athlete.points;
+        }
+      }
+    }
+    return points;
+  }
+
+  /**
+   * Forces written weigh-ins to the storage device.
+   *
+   * @throws IOException if the file cannot be synced.
+   */
+  public void sync() throws IOException {
+    synchronized (appendLock) {
+      AthleteStore.force(channel, false);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (appendLock) {
+      try {
+        AthleteStore.force(channel, false);
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Adds the points of one record read from the file.
+   */
+  private void load(ByteBuffer payload) {
+    int id = AthleteCodec.readVarInt(payload);
+    int count = AthleteCodec.readVarInt(payload);
+    int day = AthleteCodec.readVarInt(payload);
+    int weight = AthleteCodec.readVarInt(payload);
+    Series athlete = seriesFor(id);
+    athlete.append(day, weight);
+    for (int i = 1; i < count; i++) {
+      day += AthleteCodec.readVarInt(payload);
+      weight += zigZagDecode(AthleteCodec.readVarInt(payload));
+      athlete.append(day, weight);
+    }
+  }
+
+  private int blockCount() {
+    int blocks = 0;
+    AtomicReferenceArray<Series> all = series;
+    for (int id = 0; id < all.length(); id++) {
+      Series athlete = all.get(id);
+      if (athlete != null) {
+        blocks += athlete.blockCount;
+      }
+    }
+    return blocks;
+  }
+
+  /**
+   * Replaces the file with one holding a record per block. Only called
+   * while the history is being opened.
+   */
+  private void rewrite() throws IOException {
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (
+      FileChannel out = FileChannel.open(
+        temp,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE
+      )
+    ) {
+      writeHeader(out);
+      ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+      long position = AthleteStore.HEADER_SIZE;
+      AtomicReferenceArray<Series> all = series;
+      for (int id = 0; id < all.length(); id++) {
+        Series athlete = all.get(id);
+        for (int b = 0; athlete != null && b < athlete.blockCount; b++) {
+          Block block = athlete.blocks[b];
+          if (buffer.remaining() < MAX_RECORD_HEADER + block.length) {
+            buffer.flip();
+            AthleteStore.writeFully(out, buffer, position);
+            position += buffer.limit();
+            buffer.clear();
+          }
+          writeBlock(
+            buffer,
+            id,
+            block.firstDay,
+            block.firstWeight,
+            block.bytes,
+            block.length,
+            block.count
+          );
+        }
+      }
+      buffer.flip();
+      AthleteStore.writeFully(out, buffer, position);
+      position += buffer.limit();
+      AthleteStore.force(out, true);
+      endOffset = position;
+    }
+    channel.close();
+    Files.move(
+      temp,
+      path,
+      StandardCopyOption.REPLACE_EXISTING,
+      StandardCopyOption.ATOMIC_MOVE
+    );
+    channel =
+      FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Writes one block as a framed record: athlete id, number of points,
+   * first day and weight, then the deltas of the other points.
+   */
+  private static void writeBlock(
+    ByteBuffer out,
+    int id,
+    int firstDay,
+    int firstWeight,
+    byte[] deltas,
+    int length,
+    int count
+  ) {
+    int start = out.position();
+    out.putInt(0); // Length placeholder
+    AthleteCodec.writeVarInt(out, id);
+    AthleteCodec.writeVarInt(out, count);
+    AthleteCodec.writeVarInt(out, firstDay);
+    AthleteCodec.writeVarInt(out, firstWeight);
+    if (length > 0) {
+      out.put(deltas, 0, length);
+    }
+    AthleteStore.closeRecord(out, start);
+  }
+
+  private void write(ByteBuffer records) throws IOException {
+    synchronized (appendLock) {
+      AthleteStore.writeFully(channel, records, endOffset);
+      endOffset += records.limit();
+    }
+  }
+
+  private Series seriesOf(int id) {
+    AtomicReferenceArray<Series> all = series;
+    return id >= 0 && id < all.length() ? all.get(id) : null;
+  }
+
+  private Series seriesFor(int id) {
+    Series athlete = seriesOf(id);
+    if (athlete != null) {
+      return athlete;
+    }
+    if (id < 0) {
+      throw new IndexOutOfBoundsException("No athlete with id " + id);
+    }
+    synchronized (this) { // Series are only added under this lock
+      AtomicReferenceArray<Series> all = series;
+      if (id >= all.length()) {
+        AtomicReferenceArray<Series> grown = new AtomicReferenceArray<>(
+          Math.max(id + 1, all.length() * 2)
+        );
+        for (int i = 0; i < all.length(); i++) {
+          grown.set(i, all.get(i));
+        }
+        series = all = grown;
+      }
+      if (all.get(id) == null) {
+        all.set(id, new Series()); // A volatile write, so readers see it fully built
+      }
+      return all.get(id);
+    }
+  }
+
+  private static void writeHeader(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(AthleteStore.HEADER_SIZE);
+    header.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) 0);
+    header.putLong(0L).flip();
+    AthleteStore.writeFully(channel, header, 0);
+  }
+
+  private void checkHeader(FileChannel file) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(AthleteStore.HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (file.read(header, header.position()) < 0) {
+        throw new IOException(path + " is not a weight history");
+      }
+    }
+    header.flip();
+    if (header.getInt() != MAGIC) {
+      throw new IOException(path + " is not a weight history");
+    }
+    short version = header.getShort();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported weight history version " + version);
+    }
+  }
+
+  private static int zigZagEncode(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  private static int zigZagDecode(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * One weigh-in.
+   *
+   * @param date   The day of the weigh-in.
+   * @param weight The weight in kilograms.
+   */
+  record WeighIn(LocalDate date, int weight) {}
+
+  /**
+   * Receives the weigh-ins walked by {@link #forEach}.
+   */
+  interface Visitor {
+    void visit(int id, int epochDay, int weight);
+  }
+
+  /**
+   * Receives the points of one series.
+   */
+  private interface PointVisitor {
+    void visit(int epochDay, int weight);
+  }
+
+  /**
+   * The weigh-ins of one athlete. Guarded by its own lock.
+   */
+  private static final class Series {
+
+    private Block[] blocks = new Block[1];
+    private int blockCount;
+    private int points;
+    private int lastDay;
+    private int lastWeight;
+
+    /**
+     * Checks that a weigh-in on the given day may follow the last one.
+     *
+     * @throws IllegalArgumentException if the day is before the last weigh-in.
+     */
+    private void checkOrder(int day) {
+      if (points > 0 && day < lastDay) {
+        throw new IllegalArgumentException(
+          "Weigh-in on " + LocalDate.ofEpochDay(day) + " is before the last one"
+        );
+      }
+    }
+
+    private void append(int day, int weight) {
+      checkOrder(day);
+      Block block = blockCount == 0 ? null : blocks[blockCount - 1];
+      if (block == null || block.count == BLOCK_POINTS) {
+        if (block != null) {
+          block.bytes = Arrays.copyOf(block.bytes, block.length); // Full: trim it
+        }
+        if (blockCount == blocks.length) {
+          blocks = Arrays.copyOf(blocks, blockCount * 2);
+        }
+        blocks[blockCount++] = new Block(day, weight);
+      } else {
+        if (block.bytes.length - block.length < 2 * MAX_VARINT) {
+          block.bytes =
+            Arrays.copyOf(block.bytes, block.bytes.length * 2 + 2 * MAX_VARINT);
+        }
+        ByteBuffer out = ByteBuffer.wrap(block.bytes).position(block.length);
+        AthleteCodec.writeVarInt(out, day - lastDay);
+        AthleteCodec.writeVarInt(out, zigZagEncode(weight - lastWeight));
+        block.length = out.position();
+        block.count++;
+        block.lastDay = day;
+      }
+      points++;
+      lastDay = day;
+      lastWeight = weight;
+    }
+
+    private synchronized void forEach(int from, int to, PointVisitor visitor) {
+      for (int b = 0; b < blockCount; b++) {
+        Block block = blocks[b];
+        if (block.lastDay < from) {
+          continue;
+        }
+        if (block.firstDay > to) {
+          return;
+        }
+        ByteBuffer in = ByteBuffer.wrap(block.bytes, 0, block.length);
+        int day = block.firstDay;
+        int weight = block.firstWeight;
+        for (int i = 0; ; i++) {
+          if (day > to) {
+            return;
+          }
+          if (day >= from) {
+            visitor.visit(day, weight);
+          }
+          if (i + 1 == block.count) {
+            break;
+          }
+          day += AthleteCodec.readVarInt(in);
+          weight += zigZagDecode(AthleteCodec.readVarInt(in));
+        }
+      }
+    }
+  }
+
+  /**
+   * Up to {@link #BLOCK_POINTS} consecutive weigh-ins of one athlete.
+   */
+  private static final class Block {
+
+    private final int firstDay;
+    private final int firstWeight;
+    private int lastDay;
+    private int count = 1;
+    private byte[] bytes = NO_DELTAS; // Deltas of the points after the first
+    private int length;
+
+    private Block(int firstDay, int firstWeight) {
+      this.firstDay = firstDay;
+      this.firstWeight = firstWeight;
+      this.lastDay = firstDay;
+    }
+  }
+}
@@ -0,0 +1,426 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the changes made to the roster since the last snapshot.
+ *
+ * Every registration and weight change is appended here, as one checksummed
+ * record numbered with a log sequence number (LSN), before it is applied in
+ * memory. The snapshot in the {@link AthleteStore} file records the last LSN
+ * it reflects; on startup the entries after it are replayed.
+ *
+ * To fold the log into a new snapshot the active file is sealed, i.e.
+ * renamed to "name.LSN" after its last entry, and a fresh file is started.
+ * Once the snapshot is safely written the sealed files are deleted, so the
+ * log, and with it the replay on startup, stays short.
+ *
+ * An append returns only once its entries are forced to the storage
+ * device, so an acknowledged change survives a crash. Appends made at the
+ * same time share one force (group commit): the thread that forces covers
+ * every entry written so far, and the others find theirs already durable.
+ */
+class WriteAheadLog implements Closeable {
+
+  static final int MAGIC = 0x4E534A57; // "NSJW"
+  static final short FORMAT_VERSION = 2; // Same payload formats as AthleteStore
+
+  private static final byte REGISTER = 1;
+  private static final byte WEIGHT_CHANGE = 2;
+  private static final int ENTRY_HEADER = Long.BYTES + 1 + Integer.BYTES; // LSN, type, athlete id
+  private static final int WEIGHT_CHANGE_SIZE =
+    Integer.BYTES + ENTRY_HEADER + Integer.BYTES + 1 + Integer.BYTES;
+  private static final WeightCategory[] CATEGORIES = WeightCategory.values();
+
+  private final Path path;
+  private final Object appendLock = new Object(); // Serializes appends and sealing
+  private final Object syncLock = new Object(); // One force at a time, taken before appendLock
+  private volatile long durableLsn; // Entries up to this LSN are on the storage device
+  private FileChannel channel;
+  private long endOffset; // Offset at which the next entry is appended
+  private long nextLsn; // LSN of the next entry
+  private int nextId; // Id of the next registered athlete
+
+  private WriteAheadLog(Path path, long nextLsn, int nextId) {
+    this.path = path;
+    this.nextLsn = nextLsn;
+    this.nextId = nextId;
+  }
+
+  /**
+   * Opens the log at the given path and replays the entries made after the
+   * snapshot, from any sealed files first and then from the active file. An
+   * entry left half-written by a crash is cut off.
+   *
+   * @param path          The path of the active log file.
+   * @param checkpointLsn The last LSN reflected by the snapshot.
+   * @param snapshotSize  The number of athletes in the snapshot.
+   * @param replay        Receives each entry made after the snapshot.
+   * @return The opened log.
+   * @throws IOException if the log cannot be read or is not a write-ahead log.
+   */
+  public static WriteAheadLog open(
+    Path path,
+    long checkpointLsn,
+    int snapshotSize,
+    Replay replay
+  ) throws IOException {
+    WriteAheadLog log = new WriteAheadLog(path, checkpointLsn + 1, snapshotSize);
+    for (Path sealed : log.sealedFiles()) {
+      try (FileChannel channel = FileChannel.open(sealed, StandardOpenOption.READ)) {
+        log.replay(channel, checkpointLsn, replay);
+      }
+    }
+    FileChannel channel = FileChannel.open(
+      path,
+      StandardOpenOption.CREATE,
+      StandardOpenOption.READ,
+      StandardOpenOption.WRITE
+    );
+    short version = FORMAT_VERSION;
+    try {
+      if (channel.size() == 0) {
+        writeHeader(channel);
+        log.endOffset = AthleteStore.HEADER_SIZE;
+      } else {
+        version = log.checkHeader(channel);
+        log.endOffset = log.replay(channel, checkpointLsn, replay);
+        if (log.endOffset < channel.size()) {
+          channel.truncate(log.endOffset); // Drop a torn entry left by a crash
+        }
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    log.channel = channel;
+    log.durableLsn = log.nextLsn - 1;
+    if (version < FORMAT_VERSION) {
+      log.seal(); // Keep new entries out of a file in the older format
+    }
+    return log;
+  }
+
+  /**
+   * Logs the registration of an athlete and assigns its id.
+   *
+   * @param athlete The athlete being registered.
+   * @return The id of the athlete.
+   * @throws IOException if the entry cannot be written.
+   */
+  public int register(Athlete athlete) throws IOException {
+    return registerAll(List.of(athlete));
+  }
+
+  /**
+   * Logs the registration of a batch of athletes with a single write.
+   *
+   * @param athletes The athletes being registered, in order.
+   * @return The id of the first athlete of the batch.
+   * @throws IOException if the entries cannot be written.
+   */
+  public int registerAll(List<Athlete> athletes) throws IOException {
+    ByteBuffer entries = ByteBuffer.allocate(athletes.size() * 64);
+    int[] starts = new int[athletes.size()];
+    for (int i = 0; i < athletes.size(); i++) { // Encode before taking the lock
+      Athlete athlete = athletes.get(i);
+      int needed = AthleteStore.maxRecordSize(athlete) + ENTRY_HEADER;
+      if (entries.remaining() < needed) {
+        entries.flip();
+        entries = ByteBuffer.allocate(entries.capacity() * 2 + needed).put(entries);
+      }
+      starts[i] = entries.position();
+      entries.putInt(0); // Length placeholder
+      entries.putLong(0L).put(REGISTER).putInt(0); // LSN and id are set under the lock
+      AthleteStore.encode(athlete, entries);
+      AthleteStore.closeRecord(entries, starts[i]);
+    }
+    entries.flip();
+    int firstId;
+    long lastLsn;
+    synchronized (appendLock) {
+      firstId = nextId;
+      for (int i = 0; i < starts.length; i++) {
+        int start = starts[i];
+        entries.putLong(start + Integer.BYTES, nextLsn + i);
+        entries.putInt(start + Integer.BYTES + Long.BYTES + 1, firstId + i);
+        int length = entries.getInt(start);
+        CRC32 crc = new CRC32();
+        crc.update(entries.slice(start + Integer.BYTES, length));
+        entries.putInt(start + Integer.BYTES + length, (int) crc.getValue());
+      }
+      write(entries);
+      nextLsn += athletes.size();
+      nextId += athletes.size();
+      lastLsn = nextLsn - 1;
+    }
+    awaitDurable(lastLsn);
+    return firstId;
+  }
+
+  /**
+   * Logs a change to an athlete's weight and weight category.
+   *
+   * @param id             The id of the athlete.
+   * @param currentWeight  The new current weight in kilograms.
+   * @param weightCategory The new weight category.
+   * @throws IOException if the entry cannot be written.
+   */
+  public void changeWeight(int id, int currentWeight, WeightCategory weightCategory)
+    throws IOException {
+    ByteBuffer entry = ByteBuffer.allocate(WEIGHT_CHANGE_SIZE);
+    long lsn;
+    synchronized (appendLock) {
+      lsn = nextLsn;
+      entry.putInt(0); // Length placeholder
+      entry.putLong(lsn).put(WEIGHT_CHANGE).putInt(id);
+      entry.putInt(currentWeight).put((byte) weightCategory.ordinal());
+      AthleteStore.closeRecord(entry, 0);
+      entry.flip();
+      write(entry);
+      nextLsn++;
+    }
+    awaitDurable(lsn);
+  }
+
+  /**
+   * Returns the LSN of the last entry written.
+   *
+   * @return The last LSN.
+   */
+  public long lastLsn() {
+    synchronized (appendLock) {
+      return nextLsn - 1;
+    }
+  }
+
+  /**
+   * Returns the number of entry bytes in the active file.
+   *
+   * @return The size of the active file without its header.
+   */
+  public long activeSize() {
+    synchronized (appendLock) {
+      return endOffset - AthleteStore.HEADER_SIZE;
+    }
+  }
+
+  /**
+   * Seals the active file and starts a new one. Entries up to the returned
+   * LSN are then only in sealed files.
+   *
+   * @return The LSN of the last entry in the sealed file.
+   * @throws IOException if the file cannot be renamed or the new one created.
+   */
+  public long seal() throws IOException {
+    synchronized (syncLock) {
+      synchronized (appendLock) {
+        long lastLsn = nextLsn - 1;
+        if (endOffset == AthleteStore.HEADER_SIZE) {
+          return lastLsn; // Nothing to seal
+        }
+        AthleteStore.force(channel, false);
+        durableLsn = lastLsn;
+        channel.close();
+        Files.move(path, sealedPath(lastLsn));
+        channel = FileChannel.open(
+          path,
+          StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.READ,
+          StandardOpenOption.WRITE
+        );
+        writeHeader(channel);
+        endOffset = AthleteStore.HEADER_SIZE;
+        return lastLsn;
+      }
+    }
+  }
+
+  /**
+   * Deletes the sealed files whose entries are all reflected by a snapshot.
+   *
+   * @param checkpointLsn The last LSN reflected by the snapshot.
+   * @throws IOException if a file cannot be deleted.
+   */
+  public void discardSealed(long checkpointLsn) throws IOException {
+    for (Path sealed : sealedFiles()) {
+      if (lastLsnOf(sealed) <= checkpointLsn) {
+        Files.delete(sealed);
+      }
+    }
+  }
+
+  /**
+   * Forces written entries to the storage device.
+   *
+   * @throws IOException if the file cannot be synced.
+   */
+  public void sync() throws IOException {
+    awaitDurable(lastLsn());
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (syncLock) {
+      synchronized (appendLock) {
+        try {
+          AthleteStore.force(channel, false);
+        } finally {
+          channel.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits until the entries up to an LSN are on the storage device, forcing
+   * the file unless a force by another thread already covered them.
+   */
+  private void awaitDurable(long lsn) throws IOException {
+    if (lsn <= durableLsn) {
+      return;
+    }
+    synchronized (syncLock) { // Seals and closes wait too, so the file stays open
+      if (lsn <= durableLsn) {
+        return; // Forced along with the entries of the thread before
+      }
+      long written;
+      FileChannel active;
+      synchronized (appendLock) {
+        written = nextLsn - 1;
+        active = channel;
+      }
+      AthleteStore.force(active, false); // Appends go on meanwhile
+      durableLsn = written;
+    }
+  }
+
+  /**
+   * Replays the entries of one file that come after the checkpoint.
+   *
+   * @return The offset just past the last valid entry.
+   */
+  private long replay(FileChannel file, long checkpointLsn, Replay replay)
+    throws IOException {
+    boolean fixed = checkHeader(file) == 1;
+    return AthleteStore.scan(
+      file,
+      file.size(),
+      (offset, payload) -> {
+        long lsn = payload.getLong(0);
+        byte type = payload.get(Long.BYTES);
+        int id = payload.getInt(Long.BYTES + 1);
+        nextLsn = Math.max(nextLsn, lsn + 1);
+        if (lsn <= checkpointLsn) {
+          return; // Already in the snapshot
+        }
+        if (type == REGISTER) {
+          ByteBuffer athlete = payload.slice(
+            ENTRY_HEADER,
+            payload.limit() - ENTRY_HEADER
+          );
+          replay.register(
+            id,
+            fixed ? AthleteStore.decodeFixed(athlete) : AthleteStore.decode(athlete)
+          );
+          nextId = Math.max(nextId, id + 1);
+        } else if (type == WEIGHT_CHANGE) {
+          replay.changeWeight(
+            id,
+            payload.getInt(ENTRY_HEADER),
+            CATEGORIES[payload.get(ENTRY_HEADER + Integer.BYTES)]
+          );
+        } else {
+          throw new IOException("Unknown log entry type " + type + " in " + path);
+        }
+      }
+    );
+  }
+
+  private void write(ByteBuffer entries) throws IOException {
+    long start = System.nanoTime();
+    AthleteStore.writeFully(channel, entries, endOffset);
+    endOffset += entries.limit();
+    Metrics.LOG_APPEND.recordSince(start);
+  }
+
+  private List<Path> sealedFiles() throws IOException {
+    List<Path> sealed = new ArrayList<>();
+    Path directory = path.toAbsolutePath().getParent();
+    String prefix = path.getFileName() + ".";
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+      for (Path file : files) {
+        if (lastLsnOf(file) >= 0) {
+          sealed.add(file);
+        }
+      }
+    }
+    sealed.sort((a, b) -> Long.compare(lastLsnOf(a), lastLsnOf(b)));
+    return sealed;
+  }
+
+  private Path sealedPath(long lastLsn) {
+    return path.resolveSibling(path.getFileName() + "." + lastLsn);
+  }
+
+  /**
+   * Returns the last LSN encoded in a sealed file's name, or -1 if the
+   * name is not that of a sealed file.
+   */
+  private long lastLsnOf(Path sealed) {
+    String name = sealed.getFileName().toString();
+    String suffix = name.substring(path.getFileName().toString().length() + 1);
+    try {
+      return Long.parseLong(suffix);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static void writeHeader(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(AthleteStore.HEADER_SIZE);
+    header.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) 0);
+    header.putLong(0L).flip();
+    AthleteStore.writeFully(channel, header, 0);
+  }
+
+  /**
+   * Validates the header of a log file.
+   *
+   * @return The format version of the file.
+   */
+  private short checkHeader(FileChannel file) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(AthleteStore.HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (file.read(header, header.position()) < 0) {
+        throw new IOException(path + " is not a write-ahead log");
+      }
+    }
+    header.flip();
+    if (header.getInt() != MAGIC) {
+      throw new IOException(path + " is not a write-ahead log");
+    }
+    short version = header.getShort();
+    if (version < 1 || version > FORMAT_VERSION) {
+      throw new IOException("Unsupported write-ahead log version " + version);
+    }
+    return version;
+  }
+
+  /**
+   * Receives the entries replayed when the log is opened.
+   */
+  interface Replay {
+    void register(int id, Athlete athlete);
+
+    void changeWeight(int id, int currentWeight, WeightCategory weightCategory);
+  }
+}